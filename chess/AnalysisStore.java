@@ -0,0 +1,400 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Persistenter Analyse-Speicher: tiefe Suchergebnisse (Hash, Tiefe, Score, bester Zug) überleben
+ * den Neustart, damit wiederholte Analysen derselben Eröffnungen sofort warm sind.
+ *
+ * Auf der Platte ist es ein Anhänge-Log fester 24-Byte-Sätze (Hash, Daten im TT-Format, Prüfsumme)
+ * hinter einem Kopf, per mmap geschrieben. Ein halb geschriebener Satz nach einem Absturz fällt
+ * an der Prüfsumme auf; gelesen wird bis zum ersten ungültigen Satz. Ist das Log voll, wird es
+ * verdichtet: nur der aktuelle Stand jedes Hashes wird von vorn über das Log geschrieben, dahinter
+ * macht ein ungültiger Satz den Rest unsichtbar. Sind dabei mehr als drei Viertel der erlaubten
+ * Einträge übrig, fliegen die wertlosesten raus (geringste Tiefe, bei Gleichstand die ältesten).
+ * Verdichtet wird in einem eigenen Thread; was solange ankommt, landet im Index und wird danach
+ * angehängt. Die Datei bleibt dieselbe (eine gemappte Datei lässt sich unter Windows nicht
+ * ersetzen); ein Absturz mitten im Verdichten kann daher ältere Stände einzelner Stellungen
+ * zurückbringen - es ist nur ein Cache.
+ *
+ * Abfragen gehen an einen Index im Speicher (offene Adressierung, lockfrei wie die
+ * TranspositionTable); geschrieben wird synchronisiert. Der Index wächst mit der Zahl der
+ * Stellungen, nicht mit der Obergrenze. Geladen wird im Hintergrund - bis dahin ist der Speicher
+ * einfach leer.
+ *
+ * Nur aktiv mit -Dchess.store=datei, dazu -Dchess.store.mb=64 (Obergrenze).
+ * Der Kopf enthält einen Fingerabdruck der Bewertung; passt er nicht mehr, wird neu angefangen.
+ */
+final class AnalysisStore {
+
+    /** Nur Ergebnisse ab dieser Resttiefe lohnen das Speichern. */
+    static final int MIN_DEPTH = 3;
+
+    private static final int MAGIC = 0x4153_544F; // "ASTO"
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;  // MAGIC, VERSION, Fingerabdruck, Reserve
+    private static final int RECORD = 24;  // Hash, Daten, Prüfsumme
+    private static final int MAX_PROBE = 32;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static AnalysisStore shared;
+    private static boolean sharedResolved;
+
+    /** Der per System-Properties eingestellte Speicher (beim ersten Aufruf angelegt) oder null. */
+    static AnalysisStore shared() {
+        synchronized (SHARED_LOCK) {
+            if (!sharedResolved) {
+                sharedResolved = true;
+                String file = System.getProperty("chess.store");
+                if (file != null && !file.equals("off")) {
+                    long mb = Long.getLong("chess.store.mb", 64);
+                    shared = new AnalysisStore(Paths.get(file), mb << 20, Engine.evalFingerprint());
+                    shared.loadInBackground();
+                }
+            }
+            return shared;
+        }
+    }
+
+    // Snapshot für lockfreies Lesen; beim Wachsen und Verdichten wird ein neuer Index gebaut und ausgetauscht
+    private static final class Index {
+        final long[] keys;  // Hash ^ Daten, 0 = frei
+        final long[] data;
+        final int[] seq;    // Schreibreihenfolge, für "älteste zuerst" beim Verdrängen
+        final int mask;
+        int size;
+
+        Index(int capacity) {
+            int n = Integer.highestOneBit(Math.max(16, capacity * 2 - 1)) * 2; // Füllgrad <= 1/2
+            keys = new long[n];
+            data = new long[n];
+            seq = new int[n];
+            mask = n - 1;
+        }
+    }
+
+    private final Path path;
+    private final long fingerprint;
+    private final int maxEntries;
+    private volatile Index index; // null, solange nicht geladen
+
+    // Alles Folgende nur unter synchronized(this)
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private int logRecords;
+    private int nextSeq;
+    private boolean compacting;
+    private long retryCompactionAt = Long.MIN_VALUE; // nanoTime; nach einem Fehler nicht bei jedem put neu versuchen
+    private long[] pendingHashes; // Während des Verdichtens angekommen, noch nicht im Log
+    private long[] pendingDatas;
+    private int pendingCount;
+
+    AnalysisStore(Path path, long maxBytes, long fingerprint) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        this.maxEntries = (int) Math.max(1024, Math.min((Integer.MAX_VALUE - HEADER) / RECORD, (maxBytes - HEADER) / RECORD));
+    }
+
+    private void loadInBackground() {
+        Thread t = new Thread(() -> {
+            try {
+                load();
+            } catch (IOException e) {
+                AsyncLog.error("Analyse-Speicher nicht ladbar (" + path + "): " + e.getMessage());
+            }
+        }, "analysis-store");
+        t.setDaemon(true);
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "analysis-store-close"));
+    }
+
+    /** Datei öffnen (oder neu anlegen) und alle gültigen Sätze in den Index lesen. */
+    synchronized void load() throws IOException {
+        long start = System.nanoTime();
+        boolean fresh = !Files.exists(path) || !headerMatches();
+        if (fresh) writeFile(path, new long[0], new long[0], 0);
+        openLog();
+
+        Index ix = new Index(1024);
+        int n = 0;
+        for (; n < maxEntries; n++) {
+            int pos = HEADER + n * RECORD;
+            long hash = log.getLong(pos);
+            long d = log.getLong(pos + 8);
+            if (log.getLong(pos + 16) != check(hash, d)) break; // Ende des Logs oder abgerissener Satz
+            ix = withRoom(ix);
+            insert(ix, hash, d, n);
+        }
+        logRecords = n;
+        nextSeq = n;
+        index = ix;
+        int loaded = size();
+        AsyncLog.info(() -> "Analyse-Speicher " + path + ": " + loaded + " Stellungen"
+                + (fresh ? " (neu)" : "") + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /** Daten im TranspositionTable-Format oder 0. */
+    long probe(long hash) {
+        Index ix = index;
+        if (ix == null) return 0;
+        int i = (int) hash & ix.mask;
+        for (int step = 0; step < MAX_PROBE; step++) {
+            long k = ix.keys[i];
+            if (k == 0) return 0;
+            long d = ix.data[i];
+            if ((k ^ d) == hash) return d;
+            i = (i + 1) & ix.mask;
+        }
+        return 0;
+    }
+
+    /** Ergebnis übernehmen, wenn es tiefer (oder gleich tief und genauer) ist als das gespeicherte. */
+    void put(long hash, int depth, int bound, int score, int move) {
+        if (index == null) return; // Noch nicht geladen: nicht auf das Laden warten
+        synchronized (this) {
+            putLocked(hash, depth, bound, score, move);
+        }
+    }
+
+    private void putLocked(long hash, int depth, int bound, int score, int move) {
+        if (index == null || log == null) return;
+        long old = probe(hash);
+        if (old != 0) {
+            int oldDepth = TranspositionTable.depth(old);
+            if (oldDepth > depth) return;
+            if (oldDepth == depth && (bound != TranspositionTable.EXACT || TranspositionTable.bound(old) == TranspositionTable.EXACT)) return;
+        }
+
+        long d = TranspositionTable.encode(depth, bound, score, move);
+        if (!compacting && logRecords >= maxEntries) {
+            if (System.nanoTime() < retryCompactionAt) return; // Log voll, Verdichten gerade gescheitert
+            startCompaction();
+        }
+        if (compacting) {
+            if (!addPending(hash, d)) return;
+        } else {
+            appendRecord(hash, d);
+        }
+        Index ix = withRoom(index);
+        index = ix;
+        insert(ix, hash, d, nextSeq++);
+    }
+
+    int size() {
+        Index ix = index;
+        return ix == null ? 0 : ix.size;
+    }
+
+    synchronized void close() {
+        // Ein laufendes Verdichten noch abschließen lassen, sonst fehlt, was solange ankam
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (compacting && System.currentTimeMillis() < deadline) {
+            try {
+                wait(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (log != null) log.force();
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {}
+        log = null;
+    }
+
+    // ---------------------------
+    // Interna
+    // ---------------------------
+
+    private void appendRecord(long hash, long d) {
+        writeRecord(log, logRecords++, hash, d);
+    }
+
+    private static void writeRecord(ByteBuffer log, int n, long hash, long d) {
+        int pos = HEADER + n * RECORD;
+        log.putLong(pos, hash);
+        log.putLong(pos + 8, d);
+        log.putLong(pos + 16, check(hash, d)); // Zuletzt: erst damit ist der Satz gültig
+    }
+
+    // Ab Füllgrad 1/2 einen doppelt so großen Index bauen; Leser behalten bis zum Austausch den alten
+    private static Index withRoom(Index ix) {
+        if (ix.size < (ix.mask + 1) / 2) return ix;
+        Index next = new Index(ix.size * 2);
+        for (int i = 0; i <= ix.mask; i++) {
+            if (ix.keys[i] != 0) insert(next, ix.keys[i] ^ ix.data[i], ix.data[i], ix.seq[i]);
+        }
+        return next;
+    }
+
+    private static void insert(Index ix, long hash, long d, int seq) {
+        int i = (int) hash & ix.mask;
+        for (int step = 0; step < MAX_PROBE; step++) {
+            long k = ix.keys[i];
+            if (k == 0 || (k ^ ix.data[i]) == hash) {
+                if (k == 0) ix.size++;
+                // Erst Daten, dann Schlüssel: Leser sehen halbe Einträge nur als Fehltreffer
+                ix.data[i] = d;
+                ix.keys[i] = hash ^ d;
+                ix.seq[i] = seq;
+                return;
+            }
+            i = (i + 1) & ix.mask;
+        }
+        // Cluster zu lang: dann eben nicht, es ist nur ein Cache
+    }
+
+    // Log voll: Stand kopieren und im Hintergrund verdichten, bis dahin sammelt addPending
+    private void startCompaction() {
+        Index ix = index;
+        long[] hashes = new long[ix.size];
+        long[] datas = new long[ix.size];
+        int[] seqs = new int[ix.size];
+        int n = 0;
+        for (int i = 0; i <= ix.mask && n < hashes.length; i++) {
+            if (ix.keys[i] == 0) continue;
+            datas[n] = ix.data[i];
+            hashes[n] = ix.keys[i] ^ datas[n];
+            seqs[n++] = ix.seq[i];
+        }
+        int count = n;
+        MappedByteBuffer target = log; // Solange compacting gilt, schreibt sonst niemand hinein
+        compacting = true;
+        pendingHashes = new long[1024];
+        pendingDatas = new long[1024];
+        pendingCount = 0;
+        Thread t = new Thread(() -> compact(target, hashes, datas, seqs, count), "analysis-store-compact");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Ein Viertel der erlaubten Einträge bleibt nach dem Verdichten frei, mehr darf nicht warten
+    private boolean addPending(long hash, long d) {
+        if (pendingCount >= maxEntries / 4) return false;
+        if (pendingCount == pendingHashes.length) {
+            pendingHashes = Arrays.copyOf(pendingHashes, pendingCount * 2);
+            pendingDatas = Arrays.copyOf(pendingDatas, pendingCount * 2);
+        }
+        pendingHashes[pendingCount] = hash;
+        pendingDatas[pendingCount++] = d;
+        return true;
+    }
+
+    // Ohne Sperre: auswählen, sortieren, von vorn ins Log schreiben; nur der Abschluss ist synchronisiert
+    private void compact(MappedByteBuffer target, long[] hashes, long[] datas, int[] seqs, int n) {
+        // Schreibreihenfolge: Rang r -> Position im Schnappschuss (untere 32 Bit)
+        long[] bySeq = new long[n];
+        for (int i = 0; i < n; i++) bySeq[i] = (long) seqs[i] << 32 | i;
+        Arrays.sort(bySeq);
+        int keep = Math.min(n, maxEntries / 4 * 3);
+        int[] ranks = new int[keep];
+        if (keep < n) {
+            // Wertlosestes zuerst: geringe Tiefe, dann alt (kleiner Rang)
+            long[] byValue = new long[n];
+            for (int r = 0; r < n; r++) byValue[r] = (long) TranspositionTable.depth(datas[(int) bySeq[r]]) << 32 | r;
+            Arrays.sort(byValue);
+            for (int i = 0; i < keep; i++) ranks[i] = (int) byValue[n - keep + i];
+            Arrays.sort(ranks); // In Schreibreihenfolge ablegen, damit "alt" auch nach dem Neuladen stimmt
+        } else {
+            for (int r = 0; r < n; r++) ranks[r] = r;
+        }
+
+        try {
+            Index next = new Index(keep);
+            for (int i = 0; i < keep; i++) {
+                int k = (int) bySeq[ranks[i]];
+                writeRecord(target, i, hashes[k], datas[k]);
+                insert(next, hashes[k], datas[k], i);
+            }
+            finishCompaction(next, keep, n);
+            target.force(); // Außerhalb der Sperre, das kann dauern
+        } catch (RuntimeException e) {
+            AsyncLog.error("Analyse-Speicher nicht verdichtet: " + e.getMessage());
+            synchronized (this) {
+                compacting = false;
+                retryCompactionAt = System.nanoTime() + 60_000_000_000L;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void finishCompaction(Index next, int kept, int before) {
+        if (log == null) { // Inzwischen geschlossen
+            compacting = false;
+            notifyAll();
+            return;
+        }
+        logRecords = kept;
+        nextSeq = kept;
+        for (int i = 0; i < pendingCount; i++) {
+            appendRecord(pendingHashes[i], pendingDatas[i]);
+            next = withRoom(next);
+            insert(next, pendingHashes[i], pendingDatas[i], nextSeq++);
+        }
+        if (logRecords < maxEntries) log.putLong(HEADER + logRecords * RECORD + 16, 0); // Alte Sätze dahinter ungültig
+        int added = pendingCount;
+        pendingHashes = pendingDatas = null;
+        pendingCount = 0;
+        index = next;
+        compacting = false;
+        notifyAll();
+        AsyncLog.debug(() -> "Analyse-Speicher verdichtet: " + before + " -> " + kept + " Stellungen (+" + added + " neu)");
+    }
+
+    private void openLog() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Gleich auf volle Größe mappen (die Datei wächst dabei dünn besetzt mit)
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) maxEntries * RECORD);
+        log.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private boolean headerMatches() throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (h.hasRemaining() && ch.read(h) > 0) { }
+            h.flip();
+            if (h.remaining() < HEADER || h.getInt() != MAGIC || h.getInt() != VERSION) return false;
+            if (h.getLong() != fingerprint) {
+                AsyncLog.warn("Analyse-Speicher " + path + " stammt von einer anderen Bewertung, fange neu an");
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // Kopf + Sätze in einem Rutsch schreiben und auf die Platte zwingen
+    private void writeFile(Path file, long[] hashes, long[] datas, int count) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putLong(0).putLong(0);
+            for (int i = 0; i < count; i++) {
+                if (buf.remaining() < RECORD) {
+                    buf.flip();
+                    while (buf.hasRemaining()) ch.write(buf);
+                    buf.clear();
+                }
+                buf.putLong(hashes[i]).putLong(datas[i]).putLong(check(hashes[i], datas[i]));
+            }
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+    }
+
+    // Prüfsumme: ein genullter (nie geschriebener) Satz ist nie gültig
+    private static long check(long hash, long d) {
+        long z = hash ^ Long.rotateLeft(d, 29) ^ 0x9E37_79B9_7F4A_7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31) | 1;
+    }
+}
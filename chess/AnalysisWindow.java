@@ -0,0 +1,189 @@
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Frame;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.BorderFactory;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
+
+/**
+ * Nicht-modales Analysefenster hinter "Lage bewerten": endlose Suche mit den besten K Varianten.
+ *
+ * Die Suche läuft in einem eigenen Thread mit niedrigster Priorität und legt ihre Zwischenstände
+ * nur in einer AtomicReference ab. Ein Swing-Timer holt höchstens viermal pro Sekunde den neuesten
+ * Stand ab und formatiert erst dann die Züge - der EDT bekommt also nie mehr Arbeit, egal wie
+ * schnell die Suche ist. Bei jeder Stellungsänderung wird die laufende Analyse gestoppt; neu
+ * gestartet wird nur, wenn der Spieler am Zug ist, damit der Bot die CPU für sich hat.
+ */
+class AnalysisWindow extends JDialog {
+
+    private static final int REFRESH_MS = 250;
+    private static final int MAX_PV_MOVES = 12;
+
+    private final TranspositionTable tt = new TranspositionTable(32); // Bleibt über Sitzungen hinweg gefüllt
+    private final JLabel header = new JLabel(" ");
+    private final JTextArea output = new JTextArea(8, 60);
+    private final JSpinner linesSpinner = new JSpinner(new SpinnerNumberModel(3, 1, 8, 1));
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    private final Timer refreshTimer = new Timer(REFRESH_MS, e -> refresh());
+
+    // Nur vom EDT benutzt
+    private Session session;
+    private Board position;
+    private int moveNumber = 1; // Zugnummer der Partie in 'position', für die Varianten
+    private boolean active;
+
+    AnalysisWindow(Frame owner) {
+        super(owner, "Lage bewerten", false);
+        output.setEditable(false);
+        output.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        header.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Varianten:"));
+        controls.add(linesSpinner);
+        linesSpinner.addChangeListener(e -> restart());
+
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(controls, BorderLayout.WEST);
+        top.add(header, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(output), BorderLayout.CENTER);
+        pack();
+        setLocationByPlatform(true);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopSession();
+                refreshTimer.stop();
+            }
+        });
+    }
+
+    /** Fenster zeigen und die Stellung analysieren. */
+    void open(Board board, int moveNumber, boolean playerToMove) {
+        setVisible(true);
+        refreshTimer.start();
+        positionChanged(board, moveNumber, playerToMove);
+    }
+
+    /** Vom EDT bei jeder Stellungsänderung. Analysiert wird nur, wenn playerToMove gilt. */
+    void positionChanged(Board board, int moveNumber, boolean playerToMove) {
+        position = board.copy();
+        this.moveNumber = moveNumber;
+        active = playerToMove;
+        if (isVisible()) restart();
+    }
+
+    private void restart() {
+        stopSession();
+        if (!isVisible() || position == null) return;
+        if (!active) {
+            header.setText("Pausiert, Bot überlegt...");
+            return;
+        }
+        int staticEval = new Engine().evaluate(position);
+        header.setText("Statisch: " + formatScore(position.whiteToMove ? staticEval : -staticEval));
+        output.setText("");
+        session = new Session(position.copy(), moveNumber, (Integer) linesSpinner.getValue());
+        session.thread.start();
+    }
+
+    private void stopSession() {
+        if (session != null) {
+            session.engine.stop(); // Nicht warten, der Thread endet von selbst
+            session = null;
+        }
+        latest.set(null);
+    }
+
+    // Timer-Takt: nur den neuesten Stand der aktuellen Sitzung zeichnen
+    private void refresh() {
+        Snapshot s = latest.getAndSet(null);
+        if (s == null || s.session != session) return;
+        AnalysisInfo info = s.info;
+        header.setText(String.format("Tiefe %d   Knoten %,d   %,d kN/s   %.1f s", info.depth, info.nodes,
+                info.nodesPerSecond() / 1000, info.nanos / 1e9));
+        if (s.formatted) return; // Nur Fortschritt, Varianten stehen schon da
+
+        StringBuilder sb = new StringBuilder();
+        Board root = s.session.board;
+        for (AnalysisInfo.Line line : info.lines) {
+            int scoreWhite = root.whiteToMove ? line.score : -line.score;
+            sb.append(String.format("%8s  ", formatScore(scoreWhite))).append(formatPv(root, s.session.moveNumber, line.moves)).append('\n');
+        }
+        output.setText(sb.toString());
+        output.setCaretPosition(0);
+        s.session.shownLines = info.lines;
+    }
+
+    private static String formatScore(int scoreWhite) {
+        if (Engine.isMateScore(scoreWhite)) return String.format("#%+d", Engine.mateInMoves(scoreWhite));
+        return String.format("%+.2f", scoreWhite / 100.0);
+    }
+
+    // SAN mit Zugnummern, z.B. "12. e4 e5 13. Nf3" bzw. "12... e5 13. Nf3"
+    private static String formatPv(Board root, int moveNumber, List<Move> moves) {
+        Board b = root.copy();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < moves.size() && i < MAX_PV_MOVES; i++) {
+            Move m = moves.get(i);
+            if (b.whiteToMove) sb.append(moveNumber).append(". ");
+            else if (i == 0) sb.append(moveNumber).append("... ");
+            sb.append(San.format(b, m, b.generateLegalMoves())).append(' ');
+            if (!b.whiteToMove) moveNumber++;
+            b.makeMove(m);
+        }
+        return sb.toString();
+    }
+
+    private final class Session implements Runnable {
+        final Board board;
+        final int moveNumber;
+        final int multiPv;
+        final Engine engine = new Engine(tt);
+        final Thread thread;
+        volatile List<AnalysisInfo.Line> shownLines; // Vom EDT gesetzt, spart das Neuformatieren
+
+        Session(Board board, int moveNumber, int multiPv) {
+            this.board = board;
+            this.moveNumber = moveNumber;
+            this.multiPv = multiPv;
+            thread = new Thread(this, "analysis");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+            try {
+                engine.analyze(board.copy(), multiPv, info -> latest.set(new Snapshot(this, info, info.lines == shownLines)));
+            } catch (RuntimeException e) {
+                AsyncLog.error("Analyse abgebrochen: " + e);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        final Session session;
+        final AnalysisInfo info;
+        final boolean formatted;
+
+        Snapshot(Session session, AnalysisInfo info, boolean formatted) {
+            this.session = session;
+            this.info = info;
+            this.formatted = formatted;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Asynchroner Logger für Engine und GUI.
+ *
+ * Aufrufer (auch der Such-Thread) legen nur einen Eintrag in einen lock-freien
+ * Ringpuffer. Der Text wird erst im Hintergrund-Thread zusammengebaut, der den
+ * Puffer einmal pro Frame leert und alle Zeilen gebündelt an die Senke gibt.
+ * Kein Swing hier drin - die GUI hängt sich über {@link #setSink} an.
+ */
+final class AsyncLog {
+
+    enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int CAPACITY = 4096; // Muss eine Zweierpotenz sein
+    private static final int MASK = CAPACITY - 1;
+    private static final long FRAME_NANOS = 16_000_000L; // ~60 Updates pro Sekunde
+
+    // Vyukov-Ringpuffer: seq[i] sagt, ob Slot i frei (== pos) oder gefüllt (== pos + 1) ist
+    private static final AtomicLongArray seq = new AtomicLongArray(CAPACITY);
+    private static final Object[] entries = new Object[CAPACITY];
+    private static final AtomicLong tail = new AtomicLong();
+    private static long head = 0; // Nur vom Drainer-Thread benutzt
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static volatile Level minLevel = parseLevel(System.getProperty("chess.log", "DEBUG"));
+    private static volatile Consumer<List<String>> sink = null;
+    private static volatile boolean echoToConsole = true;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) seq.set(i, i);
+    }
+
+    // Thread und Shutdown-Hook erst mit dem ersten Eintrag: ein Engine-Prozess, der nichts
+    // loggt (EngineMain mit WARN), spart sich beides beim Start
+    private static final class Drainer {
+        static {
+            Thread drainer = new Thread(AsyncLog::drainLoop, "chess-log");
+            drainer.setDaemon(true);
+            drainer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flushToConsole, "chess-log-flush"));
+        }
+
+        static void ensureStarted() {}
+    }
+
+    private AsyncLog() {}
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= minLevel.ordinal();
+    }
+
+    public static void setLevel(Level level) { minLevel = level; }
+
+    /** Empfängt pro Frame alle neuen Zeilen auf einmal (läuft im Log-Thread!). */
+    public static void setSink(Consumer<List<String>> newSink) { sink = newSink; }
+
+    public static void setEchoToConsole(boolean echo) { echoToConsole = echo; }
+
+    public static void debug(Supplier<String> msg) { log(Level.DEBUG, msg); }
+    public static void info(Supplier<String> msg) { log(Level.INFO, msg); }
+    public static void info(String msg) { log(Level.INFO, msg); }
+    public static void warn(String msg) { log(Level.WARN, msg); }
+    public static void error(String msg) { log(Level.ERROR, msg); }
+
+    public static void log(Level level, Object msg) {
+        if (!isEnabled(level)) return; // Ausgeschaltete Level kosten nur diesen Vergleich
+        offer(msg);
+    }
+
+    private static void offer(Object msg) {
+        Drainer.ensureStarted();
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & MASK);
+            long s = seq.get(idx);
+            if (s == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    entries[idx] = msg;
+                    seq.set(idx, pos + 1); // Veröffentlichen
+                    return;
+                }
+                pos = tail.get();
+            } else if (s < pos) {
+                // Puffer voll: lieber Zeilen verwerfen als die Suche zu bremsen
+                dropped.incrementAndGet();
+                return;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private static synchronized List<String> drain() {
+        List<String> lines = new ArrayList<>();
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) lines.add("[Log] " + lost + " Zeilen verworfen (Puffer voll)");
+        while (true) {
+            int idx = (int) (head & MASK);
+            if (seq.get(idx) != head + 1) break;
+            Object msg = entries[idx];
+            entries[idx] = null;
+            seq.set(idx, head + CAPACITY); // Slot für die nächste Runde freigeben
+            head++;
+            lines.add(format(msg));
+        }
+        return lines;
+    }
+
+    private static String format(Object msg) {
+        try {
+            if (msg instanceof Supplier) return String.valueOf(((Supplier<?>) msg).get());
+            return String.valueOf(msg);
+        } catch (RuntimeException e) {
+            return "[Log] Formatierungsfehler: " + e;
+        }
+    }
+
+    private static void drainLoop() {
+        while (true) {
+            List<String> lines = drain();
+            if (!lines.isEmpty()) {
+                if (echoToConsole) System.out.println(String.join("\n", lines));
+                Consumer<List<String>> s = sink;
+                if (s != null) {
+                    try {
+                        s.accept(lines);
+                    } catch (RuntimeException e) {
+                        System.err.println("[Log] Senke fehlgeschlagen: " + e);
+                    }
+                }
+            }
+            LockSupport.parkNanos(FRAME_NANOS);
+        }
+    }
+
+    private static void flushToConsole() {
+        List<String> lines = drain();
+        if (!lines.isEmpty() && echoToConsole) System.out.println(String.join("\n", lines));
+    }
+
+    private static Level parseLevel(String s) {
+        try {
+            return Level.valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.DEBUG;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+import java.util.Arrays;
+
+/**
+ * Angriffsfelder einer Stellung, einmal pro Knoten berechnet (Board.attacks()) und dann von
+ * Zuggenerator (Legalität, Rochade), Schachprüfung, SEE und Bewertung gemeinsam benutzt.
+ *
+ * Für beide Farben: angegriffene Felder und Anzahl der Angreifer pro Feld. Für die Seite am Zug
+ * zusätzlich Schachgeber, gefesselte Figuren mit ihren erlaubten Strahlen und die Felder, die der
+ * König nicht betreten darf. Damit ist ein Zug legal, ohne ihn ausführen zu müssen (außer en passant).
+ *
+ * Bitboards: Bit i = Feld i, Feld 0 ist a8.
+ */
+final class AttackMap {
+
+    static final int WHITE = 0;
+    static final int BLACK = 1;
+
+    // Richtungen als Indexschritt, positive laufen zu höheren Feldnummern
+    private static final int[] DIRS = { -9, -8, -7, -1, 1, 7, 8, 9 };
+    private static final int[] DIAGONAL = { 0, 2, 5, 7 };
+    private static final int[] STRAIGHT = { 1, 3, 4, 6 };
+    private static final long[][] RAYS = new long[8][64]; // Felder ab sq (ausschließlich) bis zum Rand
+    private static final long[][] BETWEEN = new long[64][64]; // Felder echt zwischen zwei Feldern einer Linie
+    static final long[] KNIGHT = new long[64];
+    static final long[] KING = new long[64];
+    static final long[][] PAWN = new long[2][64]; // Schlagfelder eines Bauern der Farbe
+
+    static {
+        if (!EngineTables.load(EngineTables.ATTACKS, snapshotRows())) computeTables();
+    }
+
+    /** Alle Tabellen in fester Reihenfolge, für EngineTables. */
+    static long[][] snapshotRows() {
+        return EngineTables.rows(RAYS, BETWEEN, KNIGHT, KING, PAWN);
+    }
+
+    private static void computeTables() {
+        int[][] knightSteps = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 }, { 1, 2 }, { 2, -1 }, { 2, 1 } };
+        for (int sq = 0; sq < 64; sq++) {
+            int row = sq / 8, col = sq % 8;
+            for (int d = 0; d < 8; d++) {
+                int dr = DIRS[d] < -1 ? -1 : DIRS[d] > 1 ? 1 : 0;
+                int dc = DIRS[d] == -8 || DIRS[d] == 8 ? 0 : (DIRS[d] == -9 || DIRS[d] == -1 || DIRS[d] == 7) ? -1 : 1;
+                long between = 0;
+                for (int r = row + dr, c = col + dc; r >= 0 && r < 8 && c >= 0 && c < 8; r += dr, c += dc) {
+                    RAYS[d][sq] |= 1L << (r * 8 + c);
+                    BETWEEN[sq][r * 8 + c] = between;
+                    between |= 1L << (r * 8 + c);
+                }
+                if (row + dr >= 0 && row + dr < 8 && col + dc >= 0 && col + dc < 8) KING[sq] |= 1L << (sq + DIRS[d]);
+            }
+            for (int[] s : knightSteps) {
+                int r = row + s[0], c = col + s[1];
+                if (r >= 0 && r < 8 && c >= 0 && c < 8) KNIGHT[sq] |= 1L << (r * 8 + c);
+            }
+            for (int dc = -1; dc <= 1; dc += 2) {
+                int c = col + dc;
+                if (c < 0 || c > 7) continue;
+                if (row > 0) PAWN[WHITE][sq] |= 1L << ((row - 1) * 8 + c); // Weiß zieht zu kleineren Reihen
+                if (row < 7) PAWN[BLACK][sq] |= 1L << ((row + 1) * 8 + c);
+            }
+        }
+    }
+
+    final long[] pieces = new long[16];   // Bitboard pro Figur (Index = Piece-Wert)
+    final long[] occupiedBy = new long[2];
+    long occupied;
+    final long[] attacks = new long[64];  // Angriffsfelder der Figur auf dem Feld, 0 wenn leer
+    final long[] attacked = new long[2];  // Von der Farbe angegriffene Felder
+    final byte[][] attackers = new byte[2][64]; // Anzahl Angreifer der Farbe pro Feld
+    final int[] king = new int[2];        // Königsfeld, -1 wenn keiner da ist
+
+    // Nur für die Seite am Zug
+    int side;
+    long checkers;
+    long checkMask;   // Zielfelder, die ein Schach aufheben (kein Schach: alle, Doppelschach: keins)
+    long kingDanger;  // Gegnerische Angriffe, Schachstrahlen durch den König hindurch verlängert
+    long pinned;
+    final long[] pinRay = new long[64]; // Für gefesselte Figuren: Felder vom König bis zum Fesselnden
+
+    void compute(Board board) {
+        Arrays.fill(pieces, 0);
+        occupiedBy[WHITE] = occupiedBy[BLACK] = 0;
+        king[WHITE] = king[BLACK] = -1;
+        for (int sq = 0; sq < 64; sq++) {
+            byte p = board.pieces[sq];
+            if (p == Piece.EMPTY) continue;
+            pieces[p] |= 1L << sq;
+            occupiedBy[Piece.isWhite(p) ? WHITE : BLACK] |= 1L << sq;
+            if (p == Piece.W_KING) king[WHITE] = sq;
+            else if (p == Piece.B_KING) king[BLACK] = sq;
+        }
+        occupied = occupiedBy[WHITE] | occupiedBy[BLACK];
+
+        attacked[WHITE] = attacked[BLACK] = 0;
+        Arrays.fill(attackers[WHITE], (byte) 0);
+        Arrays.fill(attackers[BLACK], (byte) 0);
+        for (int sq = 0; sq < 64; sq++) {
+            byte p = board.pieces[sq];
+            if (p == Piece.EMPTY) {
+                attacks[sq] = 0;
+                continue;
+            }
+            int color = Piece.isWhite(p) ? WHITE : BLACK;
+            long a = attacksOf(p, sq, occupied);
+            attacks[sq] = a;
+            attacked[color] |= a;
+            byte[] count = attackers[color];
+            for (long bits = a; bits != 0; bits &= bits - 1) count[Long.numberOfTrailingZeros(bits)]++;
+        }
+
+        side = board.whiteToMove ? WHITE : BLACK;
+        computeChecksAndPins(board);
+    }
+
+    private void computeChecksAndPins(Board board) {
+        int enemy = side ^ 1;
+        int k = king[side];
+        checkers = 0;
+        checkMask = -1L;
+        kingDanger = attacked[enemy];
+        pinned = 0;
+        if (k < 0) return;
+        long kingBit = 1L << k;
+
+        if ((attacked[enemy] & kingBit) != 0) {
+            for (long e = occupiedBy[enemy]; e != 0; e &= e - 1) {
+                int sq = Long.numberOfTrailingZeros(e);
+                if ((attacks[sq] & kingBit) == 0) continue;
+                checkers |= 1L << sq;
+                // Langschrittler greifen hinter dem König weiter an: dorthin kann er nicht ausweichen
+                byte p = board.pieces[sq];
+                byte t = Piece.getType(p);
+                if (t == PieceType.BISHOP || t == PieceType.ROOK || t == PieceType.QUEEN) {
+                    kingDanger |= attacksOf(p, sq, occupied & ~kingBit);
+                }
+            }
+            checkMask = Long.bitCount(checkers) == 1 ? checkers | BETWEEN[k][Long.numberOfTrailingZeros(checkers)] : 0;
+        }
+
+        int off = enemy == WHITE ? 0 : 8;
+        long diagonalSliders = pieces[PieceType.BISHOP | off] | pieces[PieceType.QUEEN | off];
+        long straightSliders = pieces[PieceType.ROOK | off] | pieces[PieceType.QUEEN | off];
+        for (int d = 0; d < 8; d++) {
+            boolean diagonal = DIRS[d] == -9 || DIRS[d] == -7 || DIRS[d] == 7 || DIRS[d] == 9;
+            long sliders = diagonal ? diagonalSliders : straightSliders;
+            if ((RAYS[d][k] & sliders) == 0) continue;
+            long ray = rayAttacks(k, d, occupied);
+            long first = ray & occupiedBy[side];
+            if (first == 0) continue;
+            int blocker = Long.numberOfTrailingZeros(first);
+            long behind = rayAttacks(blocker, d, occupied);
+            if ((behind & sliders) != 0) {
+                pinned |= first;
+                pinRay[blocker] = ray | behind;
+            }
+        }
+    }
+
+    /** Ist m (pseudolegal, von der Seite am Zug) legal? En passant wird ausgeführt und geprüft. */
+    boolean isLegal(Board board, Move m) {
+        int k = king[side];
+        if (k < 0) return false;
+        long toBit = 1L << m.to;
+        if (m.from == k) return m.isCastle || (kingDanger & toBit) == 0; // Rochadefelder prüft der Generator
+        if (m.isEnPassant) {
+            // Zwei Bauern verschwinden von einer Reihe - seltener Fall, einfach ausprobieren
+            board.makeMove(m);
+            boolean legal = !board.isCheck(!board.whiteToMove);
+            board.undoMove(m);
+            return legal;
+        }
+        if ((checkMask & toBit) == 0) return false;
+        return (pinned & (1L << m.from)) == 0 || (pinRay[m.from] & toBit) != 0;
+    }
+
+    /**
+     * Anzahl legaler Züge der Seite am Zug, ohne einen Zug zu erzeugen (Perft zählt so die letzte
+     * Ebene). Anders als generateLegalMoves zählt jede Umwandlung viermal, einmal pro Figur.
+     */
+    int countLegalMoves(Board board) {
+        int them = side ^ 1;
+        int k = king[side];
+        if (k < 0) return 0;
+        long own = occupiedBy[side];
+        int count = Long.bitCount(KING[k] & ~own & ~kingDanger);
+        if (Long.bitCount(checkers) > 1) return count; // Doppelschach: nur der König zieht
+
+        long pawns = pieces[side == WHITE ? Piece.W_PAWN : Piece.B_PAWN];
+        for (long bb = own & ~pawns & ~(1L << k); bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            long targets = attacks[sq] & ~own & checkMask;
+            if ((pinned & (1L << sq)) != 0) targets &= pinRay[sq];
+            count += Long.bitCount(targets);
+        }
+
+        int push = side == WHITE ? -8 : 8;
+        int startRow = side == WHITE ? 6 : 1;
+        long promotionRank = side == WHITE ? 0xFFL : 0xFFL << 56;
+        for (long bb = pawns; bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            long targets = PAWN[side][sq] & occupiedBy[them];
+            int one = sq + push;
+            if (one >= 0 && one < 64 && (occupied & (1L << one)) == 0) {
+                targets |= 1L << one;
+                if (sq / 8 == startRow && (occupied & (1L << (one + push))) == 0) targets |= 1L << (one + push);
+            }
+            targets &= checkMask;
+            if ((pinned & (1L << sq)) != 0) targets &= pinRay[sq];
+            count += Long.bitCount(targets & ~promotionRank) + 4 * Long.bitCount(targets & promotionRank);
+        }
+
+        // Rochade wie im Generator: Rechte, leere Felder, König nicht im Schach und nicht über angegriffene Felder
+        if (checkers == 0) {
+            long attackedByThem = attacked[them];
+            if (side == WHITE) {
+                if (board.castleWK && (occupied & 0x60L << 56) == 0 && (attackedByThem & 0x60L << 56) == 0) count++;
+                if (board.castleWQ && (occupied & 0x0EL << 56) == 0 && (attackedByThem & 0x0CL << 56) == 0) count++;
+            } else {
+                if (board.castleBK && (occupied & 0x60L) == 0 && (attackedByThem & 0x60L) == 0) count++;
+                if (board.castleBQ && (occupied & 0x0EL) == 0 && (attackedByThem & 0x0CL) == 0) count++;
+            }
+        }
+
+        // En passant ist selten und hat Sonderfälle (zwei Bauern verlassen die Reihe): wie isLegal ausprobieren
+        if (board.enPassantCol >= 0) {
+            int target = (side == WHITE ? 2 : 5) * 8 + board.enPassantCol;
+            if ((occupied & (1L << target)) == 0) {
+                for (long bb = PAWN[them][target] & pawns; bb != 0; bb &= bb - 1) {
+                    Move m = new Move(Long.numberOfTrailingZeros(bb), target);
+                    m.isEnPassant = true;
+                    if (isLegal(board, m)) count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    boolean inCheck() {
+        return checkers != 0 || king[side] < 0;
+    }
+
+    /** Angreifer der Farbe auf 'square'. */
+    boolean isAttacked(int square, int color) {
+        return (attacked[color] & (1L << square)) != 0;
+    }
+
+    // ---------------------------
+    // Angriffe einzelner Figuren
+    // ---------------------------
+
+    static long attacksOf(byte piece, int sq, long occupied) {
+        switch (Piece.getType(piece)) {
+            case PieceType.PAWN: return PAWN[Piece.isWhite(piece) ? WHITE : BLACK][sq];
+            case PieceType.KNIGHT: return KNIGHT[sq];
+            case PieceType.BISHOP: return bishopAttacks(sq, occupied);
+            case PieceType.ROOK: return rookAttacks(sq, occupied);
+            case PieceType.QUEEN: return bishopAttacks(sq, occupied) | rookAttacks(sq, occupied);
+            case PieceType.KING: return KING[sq];
+            default: return 0;
+        }
+    }
+
+    static long bishopAttacks(int sq, long occupied) {
+        long a = 0;
+        for (int d : DIAGONAL) a |= rayAttacks(sq, d, occupied);
+        return a;
+    }
+
+    static long rookAttacks(int sq, long occupied) {
+        long a = 0;
+        for (int d : STRAIGHT) a |= rayAttacks(sq, d, occupied);
+        return a;
+    }
+
+    // Strahl bis einschließlich der ersten besetzten Figur
+    private static long rayAttacks(int sq, int d, long occupied) {
+        long ray = RAYS[d][sq];
+        long blockers = ray & occupied;
+        if (blockers == 0) return ray;
+        int first = DIRS[d] > 0 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+        return ray ^ RAYS[d][first];
+    }
+
+    // ---------------------------
+    // Bewertung: Mobilität und Königssicherheit (aus weißer Sicht)
+    // ---------------------------
+
+    // Pro erreichbarem Feld (ohne eigene Figuren und von gegnerischen Bauern gedeckte Felder),
+    // gemessen gegen eine typische Zahl, damit Material und PST ihren Maßstab behalten
+    static final int[] MOBILITY_WEIGHT = { 0, 0, 4, 4, 2, 1, 0 };
+    static final int[] MOBILITY_BASE = { 0, 0, 4, 6, 6, 12, 0 };
+    // Strafe nach Zahl der gegnerischen Angriffe auf Königsumgebung (nur mit gegnerischer Dame)
+    static final int KING_ATTACK_WEIGHT = 3;
+    static final int KING_ATTACK_MAX = 300;
+
+    int evaluate() {
+        return evaluateSide(WHITE) - evaluateSide(BLACK);
+    }
+
+    private int evaluateSide(int color) {
+        int enemy = color ^ 1;
+        int off = color == WHITE ? 0 : 8;
+        int enemyOff = enemy == WHITE ? 0 : 8;
+        long enemyPawns = pieces[PieceType.PAWN | enemyOff];
+        long enemyPawnAttacks = 0;
+        for (long p = enemyPawns; p != 0; p &= p - 1) enemyPawnAttacks |= PAWN[enemy][Long.numberOfTrailingZeros(p)];
+        long safe = ~occupiedBy[color] & ~enemyPawnAttacks;
+
+        int score = 0;
+        for (int t = PieceType.KNIGHT; t <= PieceType.QUEEN; t++) {
+            for (long bb = pieces[t | off]; bb != 0; bb &= bb - 1) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                score += MOBILITY_WEIGHT[t] * (Long.bitCount(attacks[sq] & safe) - MOBILITY_BASE[t]);
+            }
+        }
+
+        // Königssicherheit: je mehr Angriffe auf die Felder um den König, desto schlimmer (quadratisch)
+        int k = king[color];
+        if (k >= 0 && pieces[PieceType.QUEEN | enemyOff] != 0) {
+            int units = 0;
+            byte[] enemyCount = attackers[enemy];
+            for (long zone = KING[k] | (1L << k); zone != 0; zone &= zone - 1) {
+                units += enemyCount[Long.numberOfTrailingZeros(zone)];
+            }
+            score -= Math.min(KING_ATTACK_MAX, KING_ATTACK_WEIGHT * units * units);
+        }
+        return score;
+    }
+}
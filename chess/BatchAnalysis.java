@@ -0,0 +1,506 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verteilte Stapelanalyse: ein Koordinator verteilt Stellungen an Worker-JVMs (lokal gestartet
+ * oder auf anderen Rechnern), die per TCP Arbeit abholen und Ergebnisse zurückschicken.
+ *
+ * Die Worker ziehen sich selbst Pakete, schnelle Worker holen also einfach öfter. Ist die
+ * Warteschlange leer, bekommt ein freier Worker den ältesten noch laufenden Auftrag eines anderen
+ * noch einmal (Work-Stealing am Ende des Laufs, das erste Ergebnis zählt). Bricht die Verbindung
+ * eines Workers ab oder meldet er sich 30 s nicht, gehen seine offenen Aufträge zurück in die
+ * Warteschlange; nach MAX_ATTEMPTS Abbrüchen gilt eine Stellung als fehlerhaft. Ungültige FENs
+ * werden schon beim Einlesen aussortiert; scheitert eine Suche trotzdem, meldet der Worker
+ * "error" und die Stellung gilt sofort als fertig (ein zweiter Versuch würde genauso scheitern).
+ *
+ * Protokoll (Zeilen, Worker fragt, Koordinator antwortet nur auf take):
+ *   hello NAME THREADS
+ *   take N                  -> job ID DEPTH MOVETIME FEN ... end | wait | done
+ *   result ID SCORE DEPTH NODES MS [PV...]
+ *   error ID MELDUNG
+ *   ping
+ *
+ * Aufruf: java BatchAnalysis coordinator (fens.txt | partien.pgn) [--port 6000] [--bind ADRESSE]
+ *                            [--depth N] [--movetime MS] [--spawn K] [--worker-threads T] [--out datei]
+ *         java BatchAnalysis worker [--host localhost] [--port 6000] [--threads T] [--tt MB]
+ */
+public class BatchAnalysis {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int HEARTBEAT_MS = 5_000;
+    private static final int DEAD_AFTER_MS = 30_000;
+    private static final int REPORT_MS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        AsyncLog.setLevel(AsyncLog.Level.INFO);
+        if (args.length > 0 && args[0].equals("coordinator")) {
+            coordinator(args);
+        } else if (args.length > 0 && args[0].equals("worker")) {
+            worker(args);
+        } else {
+            System.out.println("Aufruf: java BatchAnalysis coordinator (fens.txt | partien.pgn) [--port 6000] [--bind ADRESSE]"
+                    + " [--depth N] [--movetime MS] [--spawn K] [--worker-threads T] [--out datei]");
+            System.out.println("        java BatchAnalysis worker [--host localhost] [--port 6000] [--threads T] [--tt MB]");
+        }
+    }
+
+    // ---------------------------
+    // Koordinator
+    // ---------------------------
+
+    private static void coordinator(String[] args) throws Exception {
+        String input = null, out = null, bind = "127.0.0.1";
+        int port = 6000, depth = 64, spawn = 0, workerThreads = 1;
+        long movetime = 1000;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--bind": bind = args[++i]; break;
+                case "--depth": depth = Integer.parseInt(args[++i]); break;
+                case "--movetime": movetime = Long.parseLong(args[++i]); break;
+                case "--spawn": spawn = Integer.parseInt(args[++i]); break;
+                case "--worker-threads": workerThreads = Integer.parseInt(args[++i]); break;
+                case "--out": out = args[++i]; break;
+                default: input = args[i];
+            }
+        }
+        if (input == null) throw new IllegalArgumentException("Keine Eingabedatei");
+        List<String> fens = readPositions(Paths.get(input));
+        Coordinator c = new Coordinator(fens, depth, movetime);
+        System.out.printf("%d Stellungen, Tiefe %d, %d ms pro Stellung%n", fens.size(), depth, movetime);
+
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(bind, port));
+            List<Process> spawned = new ArrayList<>();
+            for (int i = 0; i < spawn; i++) spawned.add(spawnWorker(server.getLocalPort(), workerThreads));
+
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        Thread t = new Thread(() -> c.serve(socket), "coordinator-conn");
+                        t.setDaemon(true);
+                        t.start();
+                    } catch (IOException e) {
+                        if (!server.isClosed()) AsyncLog.warn("accept: " + e.getMessage());
+                    }
+                }
+            }, "coordinator-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            c.awaitFinished(REPORT_MS);
+            for (Process p : spawned) p.waitFor(); // Haben "done" bekommen und beenden sich selbst
+        }
+
+        List<String> lines = c.resultLines();
+        if (out != null) {
+            Files.write(Paths.get(out), lines, StandardCharsets.UTF_8);
+        } else {
+            lines.forEach(System.out::println);
+        }
+        c.printSummary();
+    }
+
+    // Eine FEN pro Zeile oder, bei .pgn, jede Stellung jeder Partie. Ungültige FENs bleiben drin,
+    // der Koordinator trägt sie als Fehler ein
+    private static List<String> readPositions(Path input) throws Exception {
+        List<String> fens = new ArrayList<>();
+        if (input.toString().toLowerCase().endsWith(".pgn")) {
+            List<PgnGame> games = new ArrayList<>();
+            new PgnReader().read(input, game -> {
+                synchronized (games) { games.add(game); }
+            });
+            games.sort((a, b) -> Long.compare(a.number, b.number));
+            for (PgnGame g : games) {
+                if (g.moves == null) continue;
+                Board b = g.startBoardOrNull();
+                if (b == null) { // Unbrauchbarer FEN-Tag: wie eine ungültige FEN-Zeile melden
+                    fens.add(g.tags.get("FEN"));
+                    continue;
+                }
+                fens.add(Fen.toFen(b));
+                for (short m : g.moves) {
+                    b.makeMove(b.findLegalMove(m));
+                    fens.add(Fen.toFen(b));
+                }
+            }
+        } else {
+            for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+                if (!line.isBlank() && !line.startsWith("#")) fens.add(line.trim());
+            }
+        }
+        return fens;
+    }
+
+    private static Process spawnWorker(int port, int threads) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "BatchAnalysis",
+                "worker", "--host", "127.0.0.1", "--port", String.valueOf(port), "--threads", String.valueOf(threads));
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return pb.start();
+    }
+
+    private static final class Coordinator {
+        final String[] fens;
+        final int depth;
+        final long movetime;
+        final String[] results;
+        final int[] attempts;
+        final List<Set<WorkerConn>> holders = new ArrayList<>();
+        final ArrayDeque<Integer> pending = new ArrayDeque<>();
+        final List<WorkerConn> workers = new ArrayList<>();
+        final List<WorkerConn> allWorkers = new ArrayList<>(); // Auch getrennte, für die Zusammenfassung
+        final long start = System.nanoTime();
+        int finished;
+        long totalNodes;
+        int retried;
+        int stolen;
+        int failed;
+
+        Coordinator(List<String> fens, int depth, long movetime) {
+            this.fens = fens.toArray(new String[0]);
+            this.depth = depth;
+            this.movetime = movetime;
+            results = new String[this.fens.length];
+            attempts = new int[this.fens.length];
+            for (int i = 0; i < this.fens.length; i++) {
+                holders.add(new HashSet<>());
+                try {
+                    Fen.parse(this.fens[i]);
+                    pending.add(i);
+                } catch (RuntimeException e) {
+                    results[i] = this.fens[i] + " ; error " + e.getMessage();
+                    finished++;
+                    failed++;
+                }
+            }
+        }
+
+        void serve(Socket socket) {
+            WorkerConn w = new WorkerConn(socket.getRemoteSocketAddress().toString());
+            synchronized (this) {
+                workers.add(w);
+                allWorkers.add(w);
+            }
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter out = new PrintWriter(s.getOutputStream(), false, StandardCharsets.UTF_8)) {
+                s.setTcpNoDelay(true);
+                s.setSoTimeout(DEAD_AFTER_MS); // Kein Ergebnis und kein ping so lange: Worker gilt als tot
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("result ")) {
+                        result(w, line);
+                    } else if (line.startsWith("error ")) {
+                        error(w, line);
+                    } else if (line.startsWith("take ")) {
+                        take(w, Integer.parseInt(line.substring(5).trim()), out);
+                        out.flush();
+                    } else if (line.startsWith("hello ")) {
+                        w.name = line.split(" ")[1];
+                        AsyncLog.info("Worker verbunden: " + w.name);
+                    }
+                    // "ping" hält nur die Verbindung am Leben
+                }
+            } catch (SocketTimeoutException e) {
+                AsyncLog.warn("Worker " + w.name + " meldet sich nicht mehr");
+            } catch (IOException | RuntimeException e) {
+                if (!isFinished()) AsyncLog.warn("Worker " + w.name + " weg: " + e.getMessage());
+            } finally {
+                disconnected(w);
+            }
+        }
+
+        private synchronized void take(WorkerConn w, int n, PrintWriter out) {
+            if (finished == fens.length) {
+                out.println("done");
+                return;
+            }
+            int given = 0;
+            while (given < n && !pending.isEmpty()) {
+                int id = pending.poll();
+                if (results[id] != null) continue;
+                give(w, id, out);
+                given++;
+            }
+            if (given == 0) {
+                // Nichts mehr offen: den am längsten laufenden Auftrag eines anderen Workers doppelt vergeben
+                int victim = -1;
+                long oldest = Long.MAX_VALUE;
+                for (WorkerConn other : workers) {
+                    if (other == w) continue;
+                    for (int id : other.held) {
+                        long since = other.heldSince(id);
+                        if (results[id] == null && holders.get(id).size() == 1 && since < oldest) {
+                            oldest = since;
+                            victim = id;
+                        }
+                    }
+                }
+                if (victim < 0) {
+                    out.println("wait");
+                    return;
+                }
+                stolen++;
+                w.stolen++;
+                give(w, victim, out);
+            }
+            out.println("end");
+        }
+
+        private void give(WorkerConn w, int id, PrintWriter out) {
+            holders.get(id).add(w);
+            w.hold(id);
+            out.println("job " + id + " " + depth + " " + movetime + " " + fens[id]);
+        }
+
+        private synchronized void result(WorkerConn w, String line) {
+            String[] p = line.split(" ");
+            int id = Integer.parseInt(p[1]);
+            w.release(id);
+            holders.get(id).remove(w);
+            if (results[id] != null) return; // Schon vom anderen Worker geliefert
+            long nodes = Long.parseLong(p[4]);
+            StringBuilder sb = new StringBuilder(fens[id]).append(" ; score ").append(p[2]).append(" depth ").append(p[3])
+                    .append(" nodes ").append(p[4]).append(" time ").append(p[5]).append(" pv");
+            for (int i = 6; i < p.length; i++) sb.append(' ').append(p[i]);
+            results[id] = sb.toString();
+            finished++;
+            totalNodes += nodes;
+            w.done++;
+            w.nodes += nodes;
+            if (finished == fens.length) notifyAll();
+        }
+
+        // Die Suche selbst ist gescheitert: endgültig, nicht neu vergeben
+        private synchronized void error(WorkerConn w, String line) {
+            String[] p = line.split(" ", 3);
+            int id = Integer.parseInt(p[1]);
+            w.release(id);
+            holders.get(id).remove(w);
+            if (results[id] != null) return;
+            results[id] = fens[id] + " ; error " + (p.length > 2 ? p[2] : "");
+            AsyncLog.warn("Worker " + w.name + " scheitert an Auftrag " + id + ": " + (p.length > 2 ? p[2] : ""));
+            finished++;
+            failed++;
+            if (finished == fens.length) notifyAll();
+        }
+
+        private synchronized void disconnected(WorkerConn w) {
+            workers.remove(w);
+            for (int id : w.held) {
+                Set<WorkerConn> h = holders.get(id);
+                h.remove(w);
+                if (results[id] != null || !h.isEmpty()) continue;
+                if (++attempts[id] >= MAX_ATTEMPTS) {
+                    results[id] = fens[id] + " ; error " + attempts[id] + " Worker bei dieser Stellung verloren";
+                    finished++;
+                    if (finished == fens.length) notifyAll();
+                } else {
+                    pending.addFirst(id);
+                    retried++;
+                }
+            }
+            w.held.clear();
+            if (!isFinished()) AsyncLog.info("Worker getrennt: " + w.name + ", offene Aufträge neu eingereiht");
+        }
+
+        synchronized boolean isFinished() {
+            return finished == fens.length;
+        }
+
+        synchronized void awaitFinished(long reportMillis) throws InterruptedException {
+            while (finished < fens.length) {
+                wait(reportMillis);
+                double s = (System.nanoTime() - start) / 1e9;
+                System.out.printf("[%5.0f s] %d/%d fertig, %.1f Stellungen/s, %,.0f kN/s, %d Worker%n", s, finished,
+                        fens.length, finished / s, totalNodes / s / 1000, workers.size());
+            }
+        }
+
+        synchronized List<String> resultLines() {
+            List<String> lines = new ArrayList<>(results.length);
+            for (String r : results) lines.add(r);
+            return lines;
+        }
+
+        synchronized void printSummary() {
+            double s = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d Stellungen in %.1f s: %.1f Stellungen/s, %,.0f Knoten (%,.0f kN/s), %d neu vergeben, %d gestohlen, %d Fehler%n",
+                    finished, s, finished / s, (double) totalNodes, totalNodes / s / 1000, retried, stolen, failed);
+            for (WorkerConn w : allWorkers) {
+                System.out.printf("  %-30s %6d Stellungen %,15d Knoten %5d gestohlen%n", w.name, w.done, w.nodes, w.stolen);
+            }
+        }
+
+        final class WorkerConn {
+            String name;
+            final List<Integer> held = new ArrayList<>();
+            final List<Long> heldSince = new ArrayList<>();
+            int done;
+            long nodes;
+            int stolen;
+
+            WorkerConn(String name) {
+                this.name = name;
+            }
+
+            void hold(int id) {
+                held.add(id);
+                heldSince.add(System.nanoTime());
+            }
+
+            void release(int id) {
+                int i = held.indexOf(id);
+                if (i >= 0) {
+                    held.remove(i);
+                    heldSince.remove(i);
+                }
+            }
+
+            long heldSince(int id) {
+                return heldSince.get(held.indexOf(id));
+            }
+        }
+    }
+
+    // ---------------------------
+    // Worker
+    // ---------------------------
+
+    private static void worker(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 6000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ttMb = 16;
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Wert fehlt für " + args[i]);
+            switch (args[i]) {
+                case "--host": host = args[i + 1]; break;
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--tt": ttMb = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unbekannte Option: " + args[i]);
+            }
+        }
+
+        try (Socket s = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            s.setTcpNoDelay(true);
+            String name = java.net.InetAddress.getLocalHost().getHostName() + ":" + ProcessHandle.current().pid();
+            synchronized (out) { out.println("hello " + name + " " + threads); }
+
+            BlockingQueue<String> jobs = new LinkedBlockingQueue<>();
+            AtomicInteger busy = new AtomicInteger();
+            String poison = "";
+            Thread[] searchers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                TranspositionTable tt = new TranspositionTable(ttMb);
+                searchers[t] = new Thread(() -> {
+                    try {
+                        String job;
+                        while ((job = jobs.take()) != poison) {
+                            String result;
+                            try {
+                                result = analyse(job, tt);
+                            } catch (RuntimeException e) {
+                                // Ohne Antwort würde der Koordinator ewig warten, der Heartbeat hält die Verbindung ja offen
+                                result = "error " + job.split(" ", 3)[1] + " " + String.valueOf(e).replace('\n', ' ');
+                            }
+                            synchronized (out) { out.println(result); }
+                            busy.decrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "batch-search-" + t);
+                searchers[t].start();
+            }
+            Thread heartbeat = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(HEARTBEAT_MS);
+                        synchronized (out) { out.println("ping"); }
+                    }
+                } catch (InterruptedException e) {
+                    // Ende
+                }
+            }, "batch-heartbeat");
+            heartbeat.setDaemon(true);
+            heartbeat.start();
+
+            // Immer etwas Vorrat halten: doppelt so viele Aufträge wie Threads
+            boolean done = false;
+            while (!done) {
+                int want = 2 * threads - busy.get();
+                if (want <= 0) {
+                    Thread.sleep(20);
+                    continue;
+                }
+                synchronized (out) { out.println("take " + want); }
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("job ")) {
+                        busy.incrementAndGet();
+                        jobs.put(line);
+                    } else if (line.equals("wait")) {
+                        Thread.sleep(200);
+                        break;
+                    } else if (line.equals("done")) {
+                        done = true;
+                        break;
+                    } else {
+                        break; // "end"
+                    }
+                }
+                if (line == null) throw new SocketException("Koordinator hat die Verbindung geschlossen");
+            }
+            for (int t = 0; t < threads; t++) jobs.put(poison);
+            for (Thread t : searchers) t.join();
+            heartbeat.interrupt();
+        }
+    }
+
+    // "job ID DEPTH MOVETIME FEN" -> "result ID SCORE DEPTH NODES MS PV..."
+    private static String analyse(String job, TranspositionTable tt) {
+        String[] head = job.split(" ", 5);
+        int id = Integer.parseInt(head[1]);
+        int depth = Integer.parseInt(head[2]);
+        long movetime = Long.parseLong(head[3]);
+        Board board = Fen.parse(head[4]);
+        Engine engine = new Engine(tt, false); // Mehrere Prozesse teilen sich keine Speicherdatei
+        long t = System.nanoTime();
+        Move best = engine.getBestMove(board, depth, movetime);
+        long ms = (System.nanoTime() - t) / 1_000_000;
+        StringBuilder sb = new StringBuilder("result ").append(id).append(' ').append(best == null ? 0 : engine.getLastScore())
+                .append(' ').append(engine.getCompletedDepth()).append(' ').append(engine.getNodes()).append(' ').append(ms);
+        if (best != null) {
+            for (Move m : engine.principalVariation(board, best, Math.max(1, engine.getCompletedDepth()))) {
+                sb.append(' ').append(San.uci(m));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,8 +1,8 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
 import javax.swing.*;
 
 /**
@@ -16,13 +16,20 @@ public class ChessGame extends JFrame {
     private Engine engine;
     private boolean isPlayerTurn;
     private List<Board> history;
+    private final List<Move> playedMoves = new ArrayList<>(); // Für das Partie-Archiv
+    private boolean archived; // Aktuelle Partie schon im Archiv
     private JLabel statusLabel;
     private JTextArea debugArea;
-    private int aiDepth = 2; // Standard Schwierigkeit
+    private StrengthLevel level = StrengthLevel.of(3); // Standard Schwierigkeit
+    private static final int MAX_LOG_LINES = 500; // Ältere Zeilen fliegen aus der Debug-Anzeige
     private JPanel mainContainer;
     private CardLayout cardLayout;
+    // Zuggeneratoren-Ergebnisse pro Stellung, nur vom EDT benutzt
+    private final LegalMoveCache legalMoves = new LegalMoveCache(64);
+    private AnalysisWindow analysisWindow; // Erst beim ersten "Lage bewerten" angelegt
 
     public static void main(String[] args) {
+        AnalysisStore.shared(); // Lädt im Hintergrund, während das Fenster aufgeht
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -37,8 +44,8 @@ public class ChessGame extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Engine Logger verbinden
-        Engine.LOGGER = this::log;
+        // Log-Thread an die Debug-Anzeige hängen (ein EDT-Update pro Frame)
+        AsyncLog.setSink(this::appendLogLines);
 
         cardLayout = new CardLayout();
         mainContainer = new JPanel(cardLayout);
@@ -77,29 +84,29 @@ public class ChessGame extends JFrame {
         gbc.gridy = 1;
         panel.add(subTitle, gbc);
 
-        // Buttons
-        gbc.gridy = 2; panel.add(createDifficultyButton("Leicht (Stufe 1)", 1), gbc);
-        gbc.gridy = 3; panel.add(createDifficultyButton("Mittel (Stufe 2)", 2), gbc);
-        gbc.gridy = 4; panel.add(createDifficultyButton("Schwer (Stufe 3)", 3), gbc);
-        // Tiefe 4 ist in Java ohne Transposition Table oft zu langsam für GUI, lassen wir es bei 3 als Max für "Schwer"
-        // Oder wir optimieren es später. Für jetzt sicherheitshalber 3.
+        // Buttons: jede Stufe hat ein festes Knoten- und Zeitbudget, auch die stärkste hängt nie
+        JPanel levels = new JPanel(new GridLayout(0, 2, 10, 10));
+        levels.setOpaque(false);
+        for (StrengthLevel l : StrengthLevel.LEVELS) levels.add(createDifficultyButton(l));
+        gbc.gridy = 2;
+        panel.add(levels, gbc);
 
         return panel;
     }
 
-    private JButton createDifficultyButton(String text, int depth) {
-        JButton btn = new JButton(text);
-        btn.setFont(new Font("Arial", Font.BOLD, 20));
+    private JButton createDifficultyButton(StrengthLevel l) {
+        JButton btn = new JButton(l.name + " (Stufe " + l.level + ")");
+        btn.setFont(new Font("Arial", Font.BOLD, 18));
         btn.setFocusPainted(false);
-        btn.addActionListener(e -> startGame(depth));
+        btn.addActionListener(e -> startGame(l));
         return btn;
     }
 
-    private void startGame(int depth) {
-        this.aiDepth = depth;
+    private void startGame(StrengthLevel l) {
+        this.level = l;
         restartGame(); // Reset board
         cardLayout.show(mainContainer, "GAME");
-        setTitle("Java Schach - Spiel läuft (Tiefe " + depth + ")");
+        setTitle("Java Schach - Spiel läuft (" + l + ")");
     }
     
     private void showMenu() {
@@ -154,46 +161,69 @@ public class ChessGame extends JFrame {
     }
     
     private void evaluateCurrentPosition() {
-        int score = engine.evaluate(board);
-        int scoreWhite = board.whiteToMove ? score : -score;
-        String msg = "Aktuelle Bewertung (Weiß-Perspektive): " + scoreWhite + "\n" +
-                     (scoreWhite > 50 ? "Weiß steht besser." : scoreWhite < -50 ? "Schwarz steht besser." : "Ausgeglichen.");
-        JOptionPane.showMessageDialog(this, msg, "Bewertung", JOptionPane.INFORMATION_MESSAGE);
+        if (analysisWindow == null) analysisWindow = new AnalysisWindow(this);
+        analysisWindow.open(board, moveNumber(), isPlayerTurn);
+    }
+
+    // Zugnummer der aktuellen Stellung; history beginnt mit der Grundstellung
+    private int moveNumber() {
+        return (history.size() - 1) / 2 + 1;
+    }
+
+    // Nach jeder Änderung von board/isPlayerTurn: laufende Analyse passt nicht mehr
+    private void positionChanged() {
+        if (analysisWindow != null) analysisWindow.positionChanged(board, moveNumber(), isPlayerTurn);
     }
     
     private void log(String msg) {
-        System.out.println(msg);
+        AsyncLog.info(msg);
+    }
+
+    // Läuft im Log-Thread: alle Zeilen eines Frames gehen in einem einzigen invokeLater raus
+    private void appendLogLines(List<String> lines) {
+        String text = String.join("\n", lines) + "\n";
         SwingUtilities.invokeLater(() -> {
-            debugArea.append(msg + "\n");
+            debugArea.append(text);
+            int excess = debugArea.getLineCount() - MAX_LOG_LINES;
+            if (excess > 0) {
+                try {
+                    debugArea.replaceRange("", 0, debugArea.getLineStartOffset(excess));
+                } catch (javax.swing.text.BadLocationException ignored) {}
+            }
             debugArea.setCaretPosition(debugArea.getDocument().getLength());
         });
     }
 
     private void restartGame() {
+        playedMoves.clear(); // Abgebrochene Partien kommen nicht ins Archiv
+        archived = false;
         board = new Board();
         board.setupStandardBoard();
         history.clear();
         history.add(board.copy());
         isPlayerTurn = true;
         boardPanel.selectedSquare = -1;
-        boardPanel.validMovesSquares.clear();
+        boardPanel.validMovesMask = 0L;
         statusLabel.setText("Weiß am Zug (Du)");
         log("Spiel neu gestartet.");
-        boardPanel.repaint();
+        boardPanel.repaintChangedSquares();
+        positionChanged();
     }
 
-    private void checkGameOver() {
-        List<Move> legalMoves = board.generateLegalMoves();
-        if (legalMoves.isEmpty()) {
-            if (board.isCheck(board.whiteToMove)) {
-                String winner = board.whiteToMove ? "Schwarz (Bot)" : "Weiß (Spieler)";
-                statusLabel.setText("Schachmatt! " + winner + " gewinnt.");
-                showGameOverDialog("Schachmatt! " + winner + " gewinnt.");
-            } else {
-                statusLabel.setText("Patt! Unentschieden.");
-                showGameOverDialog("Patt! Unentschieden.");
-            }
+    /** true, wenn die Partie vorbei ist (Matt oder Patt). */
+    private boolean checkGameOver() {
+        if (legalMoves.hasAnyLegalMove(board)) return false;
+        if (board.isCheck(board.whiteToMove)) {
+            archiveGame(board.whiteToMove ? "0-1" : "1-0");
+            String winner = board.whiteToMove ? "Schwarz (Bot)" : "Weiß (Spieler)";
+            statusLabel.setText("Schachmatt! " + winner + " gewinnt.");
+            showGameOverDialog("Schachmatt! " + winner + " gewinnt.");
+        } else {
+            archiveGame("1/2-1/2");
+            statusLabel.setText("Patt! Unentschieden.");
+            showGameOverDialog("Patt! Unentschieden.");
         }
+        return true;
     }
 
     private void startBotMove() {
@@ -204,7 +234,7 @@ public class ChessGame extends JFrame {
         new Thread(() -> {
             try {
                 long start = System.currentTimeMillis();
-                Move bestMove = engine.getBestMove(boardCopy, aiDepth);
+                Move bestMove = engine.getBestMove(boardCopy, level);
                 long duration = System.currentTimeMillis() - start;
                 log("Bot fertig in " + duration + "ms. Move: " + (bestMove != null ? bestMove.from + "->" + bestMove.to : "null"));
                 
@@ -213,9 +243,11 @@ public class ChessGame extends JFrame {
                         try {
                             board.makeMove(bestMove);
                             history.add(board.copy());
+                            playedMoves.add(bestMove);
                             isPlayerTurn = true;
                             statusLabel.setText("Weiß am Zug (Du) - Bot: " + duration + "ms");
-                            boardPanel.repaint();
+                            boardPanel.repaintChangedSquares();
+                            positionChanged();
                             // Erst prüfen, dann loggen
                             checkGameOver();
                             log("Bot Zug ausgeführt.");
@@ -236,6 +268,28 @@ public class ChessGame extends JFrame {
         }).start();
     }
     
+    // Hängt die beendete Partie an das Archiv, nur mit -Dchess.archive=datei
+    private void archiveGame(String result) {
+        String file = System.getProperty("chess.archive");
+        if (archived || playedMoves.isEmpty() || file == null) return;
+        archived = true;
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", "Java Schach");
+        tags.put("Date", java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        tags.put("White", "Spieler");
+        tags.put("Black", "Bot " + level);
+        tags.put("Result", result);
+        PgnGame game = new PgnGame(0, tags);
+        game.result = result;
+        game.moves = new short[playedMoves.size()];
+        for (int i = 0; i < game.moves.length; i++) game.moves[i] = (short) playedMoves.get(i).pack();
+        // Schreiben nicht im EDT, sondern im gemeinsamen Schreiber des Archivs
+        GameArchive.appendLater(java.nio.file.Paths.get(file), game).whenComplete((ok, e) -> {
+            if (e == null) log("Partie archiviert (" + file + ").");
+            else log("Partie nicht archiviert: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+        });
+    }
+
     private void showGameOverDialog(String message) {
         JOptionPane.showMessageDialog(this, message, "Spielende", JOptionPane.INFORMATION_MESSAGE);
         analyzeGame();
@@ -244,6 +298,7 @@ public class ChessGame extends JFrame {
     private void analyzeGame() {
         StringBuilder analysis = new StringBuilder("--- Partie-Analyse ---\n\n");
         Engine analyzer = new Engine();
+        int prevScoreWhite = 0;
         
         for (int i = 0; i < history.size(); i++) {
             Board b = history.get(i);
@@ -260,12 +315,9 @@ public class ChessGame extends JFrame {
 
             analysis.append(String.format("Zug %d: %s (Eval: %d)\n", i, manualEval, scoreWhitePersp));
             
-            // Fehlererkennung
+            // Fehlererkennung (Bewertung der Vorstellung stammt aus dem letzten Durchlauf)
             if (i > 0) {
                 Board prevB = history.get(i-1);
-                int prevRaw = analyzer.evaluate(prevB);
-                int prevScoreWhite = prevB.whiteToMove ? prevRaw : -prevRaw;
-                
                 int diff = scoreWhitePersp - prevScoreWhite;
                 // Wer hat gerade gezogen?
                 // State i ist das Ergebnis des Zuges von State i-1.
@@ -280,6 +332,7 @@ public class ChessGame extends JFrame {
                     if (diff > 500) analysis.append("  -> FEHLER von Schwarz\n");
                 }
             }
+            prevScoreWhite = scoreWhitePersp;
         }
         
         analysis.append("\nZusammenfassung: Das Spiel ist beendet.");
@@ -293,12 +346,33 @@ public class ChessGame extends JFrame {
     }
 
     private class BoardPanel extends JPanel {
+        private static final Color LIGHT_SQUARE = new Color(240, 217, 181);
+        private static final Color DARK_SQUARE = new Color(181, 136, 99);
+        private static final Color SELECTED = new Color(100, 255, 100, 128);
+        private static final Color MOVE_TARGET = new Color(100, 200, 255, 128);
+        private static final Color LAST_MOVE = new Color(255, 255, 0, 80);
+
         private int offsetX = 0;
         private int offsetY = 0;
         private int selectedSquare = -1;
-        private List<Integer> validMovesSquares = new ArrayList<>();
+        private long validMovesMask = 0L; // Bit i gesetzt = Feld i ist ein mögliches Ziel
+
+        // Render-Caches, gelten nur für cachedTileSize (bei Größenänderung neu gebaut)
+        private int cachedTileSize = -1;
+        private BufferedImage boardBackground;
+        private final BufferedImage[] pieceSprites = new BufferedImage[15]; // Index = Piece-Code
+        // Was zuletzt pro Feld gezeichnet wurde (Figur + Highlight-Bits), -1 = unbekannt
+        private final int[] paintedState = new int[64];
 
         public BoardPanel() {
+            Arrays.fill(paintedState, -1);
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    cachedTileSize = -1;
+                    Arrays.fill(paintedState, -1);
+                }
+            });
             addMouseListener(new MouseAdapter() {
                 @Override
                 public void mousePressed(MouseEvent e) {
@@ -325,9 +399,9 @@ public class ChessGame extends JFrame {
         // ... handleClick and doPlayerMove remain same ...
         private void handleClick(int index) {
             // Wenn bereits gewählt und Ziel valide ist -> Ziehen
-            if (selectedSquare != -1 && validMovesSquares.contains(index)) {
+            if (selectedSquare != -1 && (validMovesMask & (1L << index)) != 0) {
                 // Finde den passenden Move
-                List<Move> moves = board.generateLegalMoves();
+                List<Move> moves = legalMoves.get(board);
                 for (Move m : moves) {
                     if (m.from == selectedSquare && m.to == index) {
                         doPlayerMove(m);
@@ -339,18 +413,20 @@ public class ChessGame extends JFrame {
             // Ansonsten Auswahl ändern
             if (board.pieces[index] != Piece.EMPTY && Piece.isWhite(board.pieces[index])) {
                 selectedSquare = index;
-                validMovesSquares = board.generateLegalMoves().stream()
-                        .filter(m -> m.from == index)
-                        .map(m -> m.to)
-                        .collect(Collectors.toList());
+                validMovesMask = 0L;
+                for (Move m : legalMoves.get(board)) {
+                    if (m.from == index) validMovesMask |= 1L << m.to;
+                }
             } else {
                 selectedSquare = -1;
-                validMovesSquares.clear();
+                validMovesMask = 0L;
             }
-            repaint();
+            repaintChangedSquares();
         }
 
         private void doPlayerMove(Move move) {
+            // Eigene Kopie, der Move aus dem Cache wird noch von anderen benutzt
+            move = move.copy();
             // Promotion check
             if (Piece.getType(board.pieces[move.from]) == PieceType.PAWN) {
                 int targetRow = move.to / 8;
@@ -369,71 +445,121 @@ public class ChessGame extends JFrame {
 
             board.makeMove(move);
             selectedSquare = -1;
-            validMovesSquares.clear();
+            validMovesMask = 0L;
             isPlayerTurn = false;
-            repaint();
+            repaintChangedSquares();
             
             // History update für Spielerzug
             history.add(board.copy());
-            checkGameOver();
-            
+            playedMoves.add(move);
+            positionChanged(); // Erst nach history, sonst stimmt die Zugnummer nicht
+
             // Wenn Spiel nicht zu Ende ist, Bot aktivieren
-            if (!board.generateLegalMoves().isEmpty()) {
+            if (!checkGameOver()) {
                  startBotMove();
             }
         }
 
+        // Zustand eines Feldes, so wie paintComponent ihn zeichnen würde
+        private int squareState(int index) {
+            int state = board.pieces[index];
+            if (index == selectedSquare) state |= 1 << 4;
+            else if ((validMovesMask & (1L << index)) != 0) state |= 1 << 5;
+            else if (board.lastMoveTo == index || board.lastMoveFrom == index) state |= 1 << 6;
+            return state;
+        }
+
+        /** Zeichnet nur die Felder neu, die sich seit dem letzten Zeichnen geändert haben. */
+        private void repaintChangedSquares() {
+            int tileSize = getTileSize();
+            for (int index = 0; index < 64; index++) {
+                if (paintedState[index] != squareState(index)) {
+                    repaint(offsetX + (index % 8) * tileSize, offsetY + (index / 8) * tileSize, tileSize, tileSize);
+                }
+            }
+        }
+
+        private void ensureCaches(int tileSize) {
+            if (tileSize == cachedTileSize) return;
+            cachedTileSize = tileSize;
+            Arrays.fill(pieceSprites, null);
+
+            boardBackground = new BufferedImage(tileSize * 8, tileSize * 8, BufferedImage.TYPE_INT_RGB);
+            Graphics2D bg = boardBackground.createGraphics();
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    bg.setColor((row + col) % 2 == 0 ? LIGHT_SQUARE : DARK_SQUARE);
+                    bg.fillRect(col * tileSize, row * tileSize, tileSize, tileSize);
+                }
+            }
+            bg.dispose();
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             
             int tileSize = getTileSize();
+            if (tileSize <= 0) return;
             int boardPixelSize = tileSize * 8;
+            ensureCaches(tileSize);
             
             offsetX = (getWidth() - boardPixelSize) / 2;
             offsetY = (getHeight() - boardPixelSize) / 2;
             
-            // Hintergrund (Randbereich)
+            // Hintergrund (Randbereich) + gecachtes Brett
             g.setColor(Color.DARK_GRAY);
             g.fillRect(0, 0, getWidth(), getHeight());
-
-            for (int row = 0; row < 8; row++) {
-                for (int col = 0; col < 8; col++) {
+            g.drawImage(boardBackground, offsetX, offsetY, null);
+
+            // Nur die Felder im Clip-Bereich anfassen (bei Teil-Repaints meist 1-4 Felder)
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            int firstCol = Math.max(0, (clip.x - offsetX) / tileSize);
+            int lastCol = Math.min(7, (clip.x + clip.width - 1 - offsetX) / tileSize);
+            int firstRow = Math.max(0, (clip.y - offsetY) / tileSize);
+            int lastRow = Math.min(7, (clip.y + clip.height - 1 - offsetY) / tileSize);
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
                     int index = row * 8 + col;
-                    boolean isLight = (row + col) % 2 == 0;
-                    
                     int x = offsetX + col * tileSize;
                     int y = offsetY + row * tileSize;
-                    
-                    // Brett zeichnen
-                    if (isLight) g.setColor(new Color(240, 217, 181));
-                    else g.setColor(new Color(181, 136, 99));
-                    g.fillRect(x, y, tileSize, tileSize);
 
                     // Highlights
                     if (index == selectedSquare) {
-                        g.setColor(new Color(100, 255, 100, 128));
+                        g.setColor(SELECTED);
                         g.fillRect(x, y, tileSize, tileSize);
-                    } else if (validMovesSquares.contains(index)) {
-                        g.setColor(new Color(100, 200, 255, 128));
+                    } else if ((validMovesMask & (1L << index)) != 0) {
+                        g.setColor(MOVE_TARGET);
                         g.fillOval(x + tileSize/3, y + tileSize/3, tileSize/3, tileSize/3);
                     }
                     else if (board.lastMoveTo == index || board.lastMoveFrom == index) {
-                        g.setColor(new Color(255, 255, 0, 80));
+                        g.setColor(LAST_MOVE);
                         g.fillRect(x, y, tileSize, tileSize);
                     }
 
                     // Figur zeichnen
                     byte piece = board.pieces[index];
                     if (piece != Piece.EMPTY) {
-                        drawPiece(g, piece, x, y, tileSize);
+                        g.drawImage(getSprite(piece, tileSize), x, y, null);
                     }
+                    paintedState[index] = squareState(index);
                 }
             }
         }
 
+        private BufferedImage getSprite(byte piece, int size) {
+            BufferedImage sprite = pieceSprites[piece];
+            if (sprite == null) {
+                sprite = renderPiece(piece, size);
+                pieceSprites[piece] = sprite;
+            }
+            return sprite;
+        }
 
-        private void drawPiece(Graphics g, byte piece, int x, int y, int size) {
+        // Rendert eine Figur einmalig in ein transparentes Bild der Feldgröße
+        private BufferedImage renderPiece(byte piece, int size) {
             String symbol = "";
             // Unicode Figuren
             switch(piece) {
@@ -450,7 +576,10 @@ public class ChessGame extends JFrame {
                 case Piece.B_KNIGHT: symbol = "♞"; break;
                 case Piece.B_PAWN: symbol = "♟"; break;
             }
-            
+
+            BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
             g.setFont(new Font("SansSerif", Font.PLAIN, (int)(size * 0.85)));
             FontMetrics fm = g.getFontMetrics();
             int w = fm.stringWidth(symbol);
@@ -462,9 +591,11 @@ public class ChessGame extends JFrame {
             // Korrektur: In Gui sind Unicode chars manchmal tricky.
             // Wir zeichnen sie einfach als Text.
             
-            int textX = x + (size - w) / 2;
-            int textY = y + (size + h) / 2 - fm.getDescent();
+            int textX = (size - w) / 2;
+            int textY = (size + h) / 2 - fm.getDescent();
             g.drawString(symbol, textX, textY);
+            g.dispose();
+            return img;
         }
     }
 }
@@ -474,88 +605,414 @@ public class ChessGame extends JFrame {
 // ---------------------------
 
 class Engine {
-    public static java.util.function.Consumer<String> LOGGER = s -> System.out.println(s);
-
     private static final int INF = 100000000;
+    // Matt in 'ply' Halbzügen = MATE - ply; so zieht die Suche das kürzeste Matt vor
+    static final int MATE = 1_000_000;
+    private static final int MAX_PLY = 1000;
     
-    // Einfache Positionstabelle für Bauern (zentraler is besser)
-    private static final int[] PAWN_TABLE = {
-        0,  0,  0,  0,  0,  0,  0,  0,
-        50, 50, 50, 50, 50, 50, 50, 50,
-        10, 10, 20, 30, 30, 20, 10, 10,
-        5,  5, 10, 25, 25, 10,  5,  5,
-        0,  0,  0, 20, 20,  0,  0,  0,
-        5, -5,-10,  0,  0,-10, -5,  5,
-        5, 10, 10,-20,-20, 10, 10,  5,
-        0,  0,  0,  0,  0,  0,  0,  0
-    };
-    
-    private static final int[] KNIGHT_TABLE = {
-        -50,-40,-30,-30,-30,-30,-40,-50,
-        -40,-20,  0,  0,  0,  0,-20,-40,
-        -30,  0, 10, 15, 15, 10,  0,-30,
-        -30,  5, 15, 20, 20, 15,  5,-30,
-        -30,  0, 15, 20, 20, 15,  0,-30,
-        -30,  5, 10, 15, 15, 10,  5,-30,
-        -40,-20,  0,  5,  5,  0,-20,-40,
-        -50,-40,-30,-30,-30,-30,-40,-50
-    };
+    // Figurenwerte und PST kommen aus EvalParams (Standard oder getunte Datei)
+    private static final int[] PARAMS = EvalParams.ACTIVE;
+
+    private final TranspositionTable tt; // Optional, darf mit anderen Engines geteilt sein
+    private PawnHashTable pawnTable; // Erst bei der ersten Bewertung angelegt, oder per setPawnTable von außen
+    private final Nnue nnue = Nnue.ACTIVE; // null = Material + PST + Bauernstruktur + Angriffe
+    private final EvalCache evalCache = EvalCache.shared(); // Von allen Engines geteilt, null = aus
+    private long evalHits, evalMisses; // Nach jeder Suche an den Cache gemeldet
+    private final boolean persistent;
+    private AnalysisStore store; // Pro Suche gesetzt, reine Bewertungs-Engines laden nichts
+    private volatile boolean stopRequested;
+    private long deadline; // System.nanoTime()-Grenze, 0 = keine
+    private long nodeLimit; // 0 = keine
+    private int evalNoise; // +/- Centipawns auf jede Bewertung, 0 = keins
+    private long noiseSeed;
+    private boolean aborted;
+    private long nodes;
+    private int completedDepth;
+    private int lastScore;
+
+    public Engine() {
+        this(null);
+    }
+
+    public Engine(TranspositionTable tt) {
+        this(tt, true);
+    }
+
+    /** persistent = false: ohne AnalysisStore (z.B. für Messungen, die nicht vorgewärmt sein sollen). */
+    Engine(TranspositionTable tt, boolean persistent) {
+        this.tt = tt;
+        this.persistent = persistent;
+    }
+
+    // Bei jeder Änderung der Bewertungsterme hochzählen, sonst passen gespeicherte Scores nicht mehr
+    private static final int EVAL_VERSION = 2;
+
+    /** Kennung der aktiven Bewertung; gespeicherte Scores gelten nur für dieselbe. */
+    static long evalFingerprint() {
+        long h = EVAL_VERSION * 31L + Arrays.hashCode(EvalParams.ACTIVE);
+        if (Nnue.ACTIVE != null) h = h * 31 + Nnue.ACTIVE.fingerprint();
+        return h;
+    }
+
+    /** Bricht eine laufende Suche ab (aus einem anderen Thread). */
+    public void stop() { stopRequested = true; }
+
+    public long getNodes() { return nodes; }
+    public int getCompletedDepth() { return completedDepth; }
+    public int getLastScore() { return lastScore; }
+    public PawnHashTable getPawnTable() {
+        if (pawnTable == null) pawnTable = new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES);
+        return pawnTable;
+    }
+
+    /** Bauern-Tabelle von außen, z.B. eine pro Such-Thread statt einer pro Engine. Nur zwischen Suchen setzen. */
+    void setPawnTable(PawnHashTable table) { pawnTable = table; }
+    public EvalCache getEvalCache() { return evalCache; }
+
+    /** Matt-Bewertungen liegen weit außerhalb jeder Materialbilanz. */
+    static boolean isMateScore(int score) { return Math.abs(score) > MATE - MAX_PLY; }
+
+    /** Züge bis zum Matt: positiv, wenn die bewertete Seite setzt, negativ, wenn sie gesetzt wird. */
+    static int mateInMoves(int score) {
+        return score > 0 ? (MATE - score + 1) / 2 : -(MATE + score) / 2;
+    }
+
+    // Mattwerte in der TT relativ zum Knoten speichern, nicht zur Wurzel
+    private static int scoreToTt(int score, int ply) {
+        if (score > MATE - MAX_PLY) return score + ply;
+        if (score < -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTt(int score, int ply) {
+        if (score > MATE - MAX_PLY) return score - ply;
+        if (score < -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
 
     public Move getBestMove(Board board, int depth) {
+        return getBestMove(board, depth, 0);
+    }
+
+    /**
+     * Zug für eine Spielstärke: Suche bis Tiefe, Knotenbudget oder Zeitgrenze der Stufe, je nachdem
+     * was zuerst erreicht ist. Mit Rauschen bleibt der Analyse-Speicher außen vor, damit verrauschte
+     * Werte nicht in ihm landen und keine tief gerechneten Züge aus ihm die Stufe überspielen.
+     */
+    public Move getBestMove(Board board, StrengthLevel level) {
+        nodeLimit = level.maxNodes;
+        evalNoise = level.evalNoise;
+        noiseSeed = System.nanoTime(); // Pro Zug neu, innerhalb der Suche aber stabil (TT bleibt konsistent)
+        try {
+            return getBestMove(board, level.maxDepth, level.maxMillis);
+        } finally {
+            nodeLimit = 0;
+            evalNoise = 0;
+        }
+    }
+
+    /**
+     * Iterative Vertiefung bis maxDepth. Mit timeLimitMillis > 0 wird abgebrochen, sobald die Zeit
+     * um ist; dann zählt der beste Zug der letzten vollständigen Tiefe.
+     */
+    public Move getBestMove(Board board, int maxDepth, long timeLimitMillis) {
+        NnueAccumulator previous = attachNnue(board);
+        try {
+            return iterativeDeepening(board, maxDepth, timeLimitMillis);
+        } finally {
+            board.nnue = previous;
+            reportEvalCache();
+        }
+    }
+
+    private void reportEvalCache() {
+        if (evalCache == null) return;
+        evalCache.count(evalHits, evalMisses);
+        evalHits = evalMisses = 0;
+        AsyncLog.debug(() -> "Bewertungs-Cache: " + evalCache.describe());
+    }
+
+    // Während der Suche führt makeMove/undoMove den NNUE-Akkumulator mit
+    private NnueAccumulator attachNnue(Board board) {
+        NnueAccumulator previous = board.nnue;
+        if (nnue != null && previous == null) board.nnue = new NnueAccumulator(nnue, board);
+        return previous;
+    }
+
+    private Move iterativeDeepening(Board board, int maxDepth, long timeLimitMillis) {
+        deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1_000_000L : 0;
+        stopRequested = false;
+        aborted = false;
+        nodes = 0;
+        completedDepth = 0;
+        store = persistent && evalNoise == 0 ? AnalysisStore.shared() : null;
+
+        List<Move> moves = board.generateLegalMoves();
+        int moveCount = moves.size();
+        AsyncLog.debug(() -> "Bot Analysis: Found " + moveCount + " legal moves.");
+        if (moves.isEmpty()) return null;
+
+        // Schon einmal mindestens so tief gerechnet (auch in einer früheren Sitzung)?
+        long stored = store != null ? store.probe(board.hash) : 0;
+        if (stored != 0 && TranspositionTable.bound(stored) == TranspositionTable.EXACT
+                && TranspositionTable.depth(stored) >= maxDepth) {
+            Move known = board.findLegalMove(TranspositionTable.move(stored));
+            if (known != null) {
+                completedDepth = TranspositionTable.depth(stored);
+                lastScore = TranspositionTable.score(stored);
+                AsyncLog.debug(() -> "Aus dem Analyse-Speicher: Tiefe " + completedDepth);
+                return known;
+            }
+        }
+
+        Move bestMove = null;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Move move = searchRoot(board, moves, depth, bestMove);
+            if (aborted) break;
+            bestMove = move;
+            completedDepth = depth;
+        }
+        PawnHashTable pawns = pawnTable;
+        if (pawns != null) AsyncLog.debug(() -> "Bauern-Hash: " + pawns.describe());
+        // Nicht mal Tiefe 1 geschafft: irgendein legaler Zug ist besser als keiner
+        return bestMove != null ? bestMove : moves.get(0);
+    }
+
+    /**
+     * Endlose Analyse mit den besten multiPv Zügen, bis stop() kommt (auch ein stop() vor dem
+     * Aufruf zählt, deshalb pro Analyse eine frische Engine nehmen). Der Listener bekommt nach
+     * jedem Wurzelzug einen Zwischenstand, im Such-Thread; Drosseln ist seine Sache.
+     * Die Varianten werden aus der Transpositionstabelle gelesen, ohne TT gibt es nur den ersten Zug.
+     */
+    public void analyze(Board board, int multiPv, java.util.function.Consumer<AnalysisInfo> listener) {
+        NnueAccumulator previous = attachNnue(board);
+        try {
+            analyzeLines(board, multiPv, listener);
+        } finally {
+            board.nnue = previous;
+            reportEvalCache();
+        }
+    }
+
+    private void analyzeLines(Board board, int multiPv, java.util.function.Consumer<AnalysisInfo> listener) {
+        store = persistent ? AnalysisStore.shared() : null;
+        deadline = 0;
+        aborted = false;
+        nodes = 0;
+        completedDepth = 0;
+        long start = System.nanoTime();
+
+        List<Move> moves = board.generateLegalMoves();
+        int k = Math.max(1, Math.min(multiPv, moves.size()));
+        List<AnalysisInfo.Line> lines = Collections.emptyList();
+        if (moves.isEmpty()) {
+            listener.accept(new AnalysisInfo(0, 0, 0, lines));
+            return;
+        }
+        int[] values = new int[moves.size()];
+
+        for (int depth = 1; depth <= MAX_ANALYSIS_DEPTH && !stopRequested; depth++) {
+            // Reihenfolge aus der letzten Tiefe: die bisher besten Varianten zuerst
+            if (depth > 1) sortByValue(moves, values);
+            int[] top = new int[k]; // Beste k Werte dieser Tiefe, absteigend
+            Arrays.fill(top, -INF);
+
+            for (int i = 0; i < moves.size(); i++) {
+                // Nur wer die k-te Variante schlägt, braucht einen genauen Wert
+                int alpha = top[k - 1];
+                Move move = moves.get(i);
+                board.makeMove(move);
+                int value = -minimax(board, depth - 1, 1, -INF, -alpha);
+                board.undoMove(move);
+                if (aborted) break;
+                values[i] = value;
+                if (value > alpha) insertTop(top, value);
+                listener.accept(new AnalysisInfo(completedDepth, nodes, System.nanoTime() - start, lines));
+            }
+            if (aborted) break;
+
+            sortByValue(moves, values);
+            List<AnalysisInfo.Line> next = new ArrayList<>(k);
+            for (int i = 0; i < k; i++) {
+                next.add(new AnalysisInfo.Line(values[i], principalVariation(board, moves.get(i), depth)));
+            }
+            lines = Collections.unmodifiableList(next);
+            completedDepth = depth;
+            lastScore = values[0];
+            if (store != null && depth >= AnalysisStore.MIN_DEPTH && k == 1) {
+                // Nur mit einer Variante ist der Wert exakt, bei mehreren sind es nur die oberen k
+                store.put(board.hash, depth, TranspositionTable.EXACT, values[0], moves.get(0).pack());
+            }
+            listener.accept(new AnalysisInfo(depth, nodes, System.nanoTime() - start, lines));
+        }
+    }
+
+    private static final int MAX_ANALYSIS_DEPTH = 64;
+
+    private static void insertTop(int[] top, int value) {
+        int i = top.length - 1;
+        while (i > 0 && top[i - 1] < value) {
+            top[i] = top[i - 1];
+            i--;
+        }
+        top[i] = value;
+    }
+
+    // Züge und Werte gemeinsam absteigend sortieren (stabil, wenige Dutzend Einträge)
+    private static void sortByValue(List<Move> moves, int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            int v = values[i];
+            Move m = moves.get(i);
+            int j = i - 1;
+            while (j >= 0 && values[j] < v) {
+                values[j + 1] = values[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            values[j + 1] = v;
+            moves.set(j + 1, m);
+        }
+    }
+
+    // Hauptvariante: erster Zug, dann die besten Züge aus der TT, solange sie legal sind
+    List<Move> principalVariation(Board board, Move first, int maxLength) {
+        List<Move> pv = new ArrayList<>(maxLength);
+        pv.add(first);
+        if (tt == null) return pv;
+        Board b = board.copy();
+        b.makeMove(first);
+        while (pv.size() < maxLength) {
+            long entry = tt.probe(b.hash);
+            if (entry == 0) break;
+            Move m = b.findLegalMove(TranspositionTable.move(entry));
+            if (m == null) break;
+            b.makeMove(m);
+            pv.add(m);
+        }
+        return pv;
+    }
+
+    private Move searchRoot(Board board, List<Move> moves, int depth, Move previousBest) {
         Move bestMove = null;
         int bestValue = -INF;
         int alpha = -INF;
         int beta = INF;
         
-        List<Move> moves = board.generateLegalMoves();
-        LOGGER.accept("Bot Analysis: Found " + moves.size() + " legal moves.");
-        
-        moves.sort((m1, m2) -> {
-            int score1 = (board.pieces[m1.to] != Piece.EMPTY) ? 10 : 0;
-            int score2 = (board.pieces[m2.to] != Piece.EMPTY) ? 10 : 0;
-            return score2 - score1;
-        });
+        // Bester Zug der letzten Iteration zuerst, dann Schlagzüge nach SEE
+        orderMoves(board, moves, previousBest != null ? previousBest.pack() : 0);
 
         for (Move move : moves) {
             board.makeMove(move);
-            int value = -minimax(board, depth - 1, -beta, -alpha);
+            int value = -minimax(board, depth - 1, 1, -beta, -alpha);
             board.undoMove(move);
+            if (aborted) return null;
             
-            // LOGGER.accept("Move " + move.from + "->" + move.to + " Score: " + value);
+            // AsyncLog.debug(() -> "Move " + move.from + "->" + move.to + " Score: " + value);
 
             if (value > bestValue) {
                 bestValue = value;
                 bestMove = move;
-                LOGGER.accept("New/Best Move: " + move.from + "->" + move.to + " val=" + value);
+                // Text wird erst im Log-Thread gebaut, die Suche zahlt nur den Eintrag
+                AsyncLog.debug(() -> "New/Best Move: " + move.from + "->" + move.to + " val=" + value);
             }
             alpha = Math.max(alpha, value);
         }
+        lastScore = bestValue;
+        if (tt != null) tt.store(board.hash, depth, TranspositionTable.EXACT, bestValue, bestMove.pack());
+        if (store != null && depth >= AnalysisStore.MIN_DEPTH) {
+            store.put(board.hash, depth, TranspositionTable.EXACT, bestValue, bestMove.pack());
+        }
         return bestMove;
     }
 
-    private int minimax(Board board, int depth, int alpha, int beta) {
+    private int minimax(Board board, int depth, int ply, int alpha, int beta) {
+        if ((++nodes & 1023) == 0 && outOfBudget()) aborted = true;
+        if (aborted) return 0;
         if (depth == 0) {
-            return evaluate(board);
+            return quiesce(board, alpha, beta);
+        }
+
+        // Mattdistanz: ein kürzeres Matt als schon gefunden gibt es hier nicht mehr
+        alpha = Math.max(alpha, -MATE + ply);
+        beta = Math.min(beta, MATE - ply - 1);
+        if (alpha >= beta) return alpha;
+
+        int ttMove = 0;
+        long entry = tt != null ? tt.probe(board.hash) : 0;
+        // Tiefe Knoten auch im Analyse-Speicher nachsehen (kann aus einer früheren Sitzung stammen)
+        if (entry == 0 && store != null && depth >= AnalysisStore.MIN_DEPTH) entry = store.probe(board.hash);
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = scoreFromTt(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) return score;
+                if (bound == TranspositionTable.LOWER && score >= beta) return beta;
+                if (bound == TranspositionTable.UPPER && score <= alpha) return alpha;
+            }
         }
 
         List<Move> moves = board.generateLegalMoves();
         if (moves.isEmpty()) {
-            if (board.isCheck(board.whiteToMove)) return -INF + 100; // Matt
+            if (board.isCheck(board.whiteToMove)) return -MATE + ply; // Matt, je später desto besser
             return 0; // Patt
         }
+        orderMoves(board, moves, ttMove);
 
+        int originalAlpha = alpha;
+        int bestMove = 0;
         for (Move move : moves) {
             board.makeMove(move);
-            int value = -minimax(board, depth - 1, -beta, -alpha);
+            int value = -minimax(board, depth - 1, ply + 1, -beta, -alpha);
             board.undoMove(move);
+            if (aborted) return 0;
             
-            if (value >= beta) return beta;
-            alpha = Math.max(alpha, value);
+            if (value >= beta) {
+                remember(board.hash, depth, TranspositionTable.LOWER, scoreToTt(beta, ply), move.pack());
+                return beta;
+            }
+            if (value > alpha) {
+                alpha = value;
+                bestMove = move.pack();
+            }
         }
+        int bound = alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        remember(board.hash, depth, bound, scoreToTt(alpha, ply), bestMove != 0 ? bestMove : ttMove);
         return alpha;
     }
 
+    private boolean outOfBudget() {
+        return stopRequested || (deadline != 0 && System.nanoTime() > deadline) || (nodeLimit != 0 && nodes >= nodeLimit);
+    }
+
+    private void remember(long hash, int depth, int bound, int score, int move) {
+        if (tt != null) tt.store(hash, depth, bound, score, move);
+        if (store != null && depth >= AnalysisStore.MIN_DEPTH) store.put(hash, depth, bound, score, move);
+    }
+
     public int evaluate(Board board) {
+        int score = evalCache != null ? evalCache.probe(board.hash) : Integer.MIN_VALUE;
+        if (score != Integer.MIN_VALUE) {
+            evalHits++;
+        } else {
+            evalMisses++;
+            if (nnue != null) score = board.nnue != null ? board.nnue.evaluate(board.whiteToMove) : nnue.evaluate(board);
+            else score = evaluateClassic(board);
+            if (evalCache != null) evalCache.store(board.hash, score);
+        }
+        // Rauschen erst hier, im Cache steht immer die echte Bewertung
+        return evalNoise != 0 ? score + noise(board.hash) : score;
+    }
+
+    // Gleichverteilt in [-evalNoise, evalNoise], für dieselbe Stellung innerhalb einer Suche immer gleich
+    private int noise(long hash) {
+        long z = (hash ^ noiseSeed) * 0x9E37_79B9_7F4A_7C15L;
+        z ^= z >>> 32;
+        return (int) Long.remainderUnsigned(z, 2 * evalNoise + 1) - evalNoise;
+    }
+
+    // Handgeschriebene Bewertung: Material + PST + Bauernstruktur + Mobilität/Königssicherheit
+    int evaluateClassic(Board board) {
         int score = 0;
         for (int i = 0; i < 64; i++) {
             byte p = board.pieces[i];
@@ -570,6 +1027,10 @@ class Engine {
                 score -= (val + pst);
             }
         }
+        // Bauernstruktur ändert sich selten -> fast immer ein Treffer in der Bauern-Hash-Tabelle
+        score += getPawnTable().score(board);
+        // Mobilität und Königssicherheit; die Angriffsfelder braucht der Zuggenerator im selben Knoten ohnehin
+        score += board.attacks().evaluate();
         // Perspektive des aktiven Spielers: Wenn Weiß am Zug, ist positiver Score gut.
         // Wenn Schwarz am Zug, ist negativer Score gut (aber Minimax dreht das Vorzeichen).
         // Hier geben wir "Weiß-Vorteil" zurück.
@@ -577,15 +1038,7 @@ class Engine {
     }
 
     private int getPieceValue(byte p) {
-        switch (Piece.getType(p)) {
-            case PieceType.PAWN: return 100;
-            case PieceType.KNIGHT: return 320;
-            case PieceType.BISHOP: return 330;
-            case PieceType.ROOK: return 500;
-            case PieceType.QUEEN: return 900;
-            case PieceType.KING: return 20000;
-            default: return 0;
-        }
+        return PARAMS[EvalParams.PIECE_OFFSET + Piece.getType(p)];
     }
     
     private int getPstValue(byte p, int index) {
@@ -599,11 +1052,202 @@ class Engine {
         int tableIdx = tableRow * 8 + col;
         
         switch (Piece.getType(p)) {
-            case PieceType.PAWN: return PAWN_TABLE[tableIdx];
-            case PieceType.KNIGHT: return KNIGHT_TABLE[tableIdx];
+            case PieceType.PAWN: return PARAMS[EvalParams.PAWN_OFFSET + tableIdx];
+            case PieceType.KNIGHT: return PARAMS[EvalParams.KNIGHT_OFFSET + tableIdx];
             default: return 0;
         }
     }
+
+    // Ruhesuche: nur Schlagzüge und Umwandlungen, bis die Stellung "ruhig" ist
+    int quiesce(Board board, int alpha, int beta) {
+        if ((++nodes & 1023) == 0 && outOfBudget()) aborted = true;
+        if (aborted) return 0;
+        int standPat = evaluate(board);
+        if (standPat >= beta) return beta;
+        if (standPat > alpha) alpha = standPat;
+
+        List<Move> captures = new ArrayList<>();
+        for (Move move : board.generateLegalMoves()) {
+            if (!isTactical(board, move)) continue;
+            // Verlustreiche Schlagzüge (SEE < 0) lohnen sich hier nie -> gar nicht erst suchen
+            move.orderScore = board.see(move);
+            if (move.orderScore >= 0) captures.add(move);
+        }
+        captures.sort((m1, m2) -> m2.orderScore - m1.orderScore);
+
+        for (Move move : captures) {
+            board.makeMove(move);
+            int value = -quiesce(board, -beta, -alpha);
+            board.undoMove(move);
+            if (aborted) return 0;
+
+            if (value >= beta) return beta;
+            alpha = Math.max(alpha, value);
+        }
+        return alpha;
+    }
+
+    // Hash-Zug zuerst, dann gewinnende/gleiche Schlagzüge nach SEE, ruhige Züge, zuletzt verlierende Schlagzüge
+    private static void orderMoves(Board board, List<Move> moves, int firstMove) {
+        for (Move m : moves) {
+            if (firstMove != 0 && m.pack() == firstMove) {
+                m.orderScore = 1_000_000;
+            } else if (isTactical(board, m)) {
+                int see = board.see(m);
+                m.orderScore = see >= 0 ? 100_000 + see : -100_000 + see;
+            } else {
+                m.orderScore = 0;
+            }
+        }
+        moves.sort((m1, m2) -> Integer.compare(m2.orderScore, m1.orderScore));
+    }
+
+    static boolean isTactical(Board board, Move move) {
+        return board.pieces[move.to] != Piece.EMPTY || move.isEnPassant || move.promotion != Piece.EMPTY;
+    }
+}
+
+/** Zwischenstand von Engine.analyze. Scores aus Sicht der Seite, die in der Stellung am Zug ist. */
+class AnalysisInfo {
+    final int depth;  // Letzte vollständig gerechnete Tiefe
+    final long nodes;
+    final long nanos;
+    final List<Line> lines; // Beste zuerst, leer vor Tiefe 1
+
+    AnalysisInfo(int depth, long nodes, long nanos, List<Line> lines) {
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.lines = lines;
+    }
+
+    long nodesPerSecond() {
+        return nanos > 0 ? nodes * 1_000_000_000L / nanos : 0;
+    }
+
+    static final class Line {
+        final int score;
+        final List<Move> moves;
+
+        Line(int score, List<Move> moves) {
+            this.score = score;
+            this.moves = moves;
+        }
+    }
+}
+
+/**
+ * Bewertungsparameter der Engine als flacher int-Vektor.
+ * Standard sind die alten, handgewählten Werte. Beim Start wird - falls vorhanden -
+ * eine vom TexelTuner erzeugte Datei geladen (-Dchess.params=pfad, sonst eval.params).
+ */
+class EvalParams {
+    // [0..6] Figurenwerte nach PieceType, danach Bauern- und Springer-PST (aus weißer Sicht)
+    public static final int PIECE_OFFSET = 0;
+    public static final int PAWN_OFFSET = 7;
+    public static final int KNIGHT_OFFSET = PAWN_OFFSET + 64;
+    public static final int SIZE = KNIGHT_OFFSET + 64;
+
+    private static final int[] PIECE_VALUES = { 0, 100, 320, 330, 500, 900, 20000 };
+
+    // Einfache Positionstabelle für Bauern (zentraler is besser)
+    private static final int[] PAWN_TABLE = {
+        0,  0,  0,  0,  0,  0,  0,  0,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        10, 10, 20, 30, 30, 20, 10, 10,
+        5,  5, 10, 25, 25, 10,  5,  5,
+        0,  0,  0, 20, 20,  0,  0,  0,
+        5, -5,-10,  0,  0,-10, -5,  5,
+        5, 10, 10,-20,-20, 10, 10,  5,
+        0,  0,  0,  0,  0,  0,  0,  0
+    };
+    
+    private static final int[] KNIGHT_TABLE = {
+        -50,-40,-30,-30,-30,-30,-40,-50,
+        -40,-20,  0,  0,  0,  0,-20,-40,
+        -30,  0, 10, 15, 15, 10,  0,-30,
+        -30,  5, 15, 20, 20, 15,  5,-30,
+        -30,  0, 15, 20, 20, 15,  0,-30,
+        -30,  5, 10, 15, 15, 10,  5,-30,
+        -40,-20,  0,  5,  5,  0,-20,-40,
+        -50,-40,-30,-30,-30,-30,-40,-50
+    };
+
+    public static final int[] ACTIVE = load();
+
+    public static int[] defaults() {
+        int[] params = new int[SIZE];
+        System.arraycopy(PIECE_VALUES, 0, params, PIECE_OFFSET, 7);
+        System.arraycopy(PAWN_TABLE, 0, params, PAWN_OFFSET, 64);
+        System.arraycopy(KNIGHT_TABLE, 0, params, KNIGHT_OFFSET, 64);
+        return params;
+    }
+
+    static java.nio.file.Path path() {
+        return java.nio.file.Paths.get(System.getProperty("chess.params", "eval.params"));
+    }
+
+    private static int[] load() {
+        java.nio.file.Path path = path();
+        if (!java.nio.file.Files.isRegularFile(path)) return defaults();
+        int[] snapshot = EngineTables.evalParams(path, SIZE); // Spart das Parsen, wenn die Datei unverändert ist
+        if (snapshot != null) return snapshot;
+        try {
+            int[] params = read(path);
+            AsyncLog.info("Bewertungsparameter geladen: " + path);
+            return params;
+        } catch (java.io.IOException | RuntimeException e) {
+            AsyncLog.warn("Parameterdatei " + path + " unbrauchbar, nehme Standardwerte: " + e.getMessage());
+            return defaults();
+        }
+    }
+
+    /** Format: Blöcke "pieces", "pawn", "knight" gefolgt von ihren Zahlen, '#' = Kommentar. */
+    public static int[] read(java.nio.file.Path path) throws java.io.IOException {
+        int[] params = defaults();
+        int offset = -1, remaining = 0;
+        for (String line : java.nio.file.Files.readAllLines(path)) {
+            int hashPos = line.indexOf('#');
+            if (hashPos >= 0) line = line.substring(0, hashPos);
+            for (String token : line.trim().split("\\s+")) {
+                if (token.isEmpty()) continue;
+                if (remaining == 0) {
+                    switch (token) {
+                        case "pieces": offset = PIECE_OFFSET; remaining = 7; break;
+                        case "pawn": offset = PAWN_OFFSET; remaining = 64; break;
+                        case "knight": offset = KNIGHT_OFFSET; remaining = 64; break;
+                        default: throw new IllegalArgumentException("Unbekannter Block: " + token);
+                    }
+                } else {
+                    params[offset++] = Integer.parseInt(token);
+                    remaining--;
+                }
+            }
+        }
+        if (remaining != 0) throw new IllegalArgumentException("Datei endet mitten in einem Block");
+        return params;
+    }
+
+    public static void write(int[] params, java.nio.file.Path path, String comment) throws java.io.IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# ").append(comment).append('\n');
+        sb.append("pieces");
+        for (int i = 0; i < 7; i++) sb.append(' ').append(params[PIECE_OFFSET + i]);
+        sb.append('\n');
+        appendTable(sb, "pawn", params, PAWN_OFFSET);
+        appendTable(sb, "knight", params, KNIGHT_OFFSET);
+        java.nio.file.Files.write(path, sb.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    private static void appendTable(StringBuilder sb, String name, int[] params, int offset) {
+        sb.append(name).append('\n');
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                sb.append(String.format("%5d", params[offset + row * 8 + col]));
+            }
+            sb.append('\n');
+        }
+    }
 }
 
 class Move {
@@ -618,11 +1262,91 @@ class Move {
     boolean prevWhiteToMove;
     int prevEnPassantCol;
     boolean prevCastleWK, prevCastleWQ, prevCastleBK, prevCastleBQ;
+    long prevHash;
+    long prevPawnHash;
+
+    // Nur für die Zugsortierung der Engine
+    int orderScore;
 
     public Move(int from, int to) {
         this.from = from;
         this.to = to;
     }
+
+    // Kompakt: from | to << 6 | Umwandlungs-Typ << 12 (passt in 15 Bit)
+    public int pack() {
+        return from | (to << 6) | (Piece.getType(promotion) << 12);
+    }
+
+    // Kopiert nur den Zug selbst, nicht den Undo State
+    public Move copy() {
+        Move m = new Move(from, to);
+        m.promotion = promotion;
+        m.isCastle = isCastle;
+        m.isEnPassant = isEnPassant;
+        return m;
+    }
+}
+
+/**
+ * Zufallsschlüssel für den Zobrist-Hash. Fester Seed, damit Hashes
+ * zwischen Programmläufen gleich bleiben.
+ */
+class Zobrist {
+    public static final long[][] PIECES = new long[15][64]; // Index = Piece-Code
+    public static final long[] CASTLING = new long[16];     // Index = Rochade-Bitmaske
+    public static final long[] EN_PASSANT = new long[8];
+    public static final long BLACK_TO_MOVE;
+
+    private static final long SEED = 0x5EED_C0DE_CAFEL;
+
+    static {
+        long[] blackToMove = new long[1];
+        // Stichprobe: ein Schnappschuss mit anderem Seed würde alle gespeicherten Hashes entwerten
+        if (!EngineTables.load(EngineTables.ZOBRIST, EngineTables.rows(PIECES, CASTLING, EN_PASSANT, blackToMove))
+                || PIECES[0][0] != new SplittableRandom(SEED).nextLong()) {
+            SplittableRandom rnd = new SplittableRandom(SEED);
+            for (long[] squares : PIECES) {
+                for (int i = 0; i < 64; i++) squares[i] = rnd.nextLong();
+            }
+            for (int i = 0; i < 16; i++) CASTLING[i] = rnd.nextLong();
+            for (int i = 0; i < 8; i++) EN_PASSANT[i] = rnd.nextLong();
+            blackToMove[0] = rnd.nextLong();
+        }
+        BLACK_TO_MOVE = blackToMove[0];
+    }
+}
+
+/**
+ * Kleiner LRU-Cache: Stellung (Zobrist-Hash) -> Liste der legalen Züge.
+ * Die Listen sind unveränderlich; wer einen Move anpassen will, nimmt move.copy().
+ */
+class LegalMoveCache {
+    private final Map<Long, List<Move>> cache;
+
+    public LegalMoveCache(int capacity) {
+        cache = new LinkedHashMap<Long, List<Move>>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<Move>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized List<Move> get(Board board) {
+        List<Move> moves = cache.get(board.hash);
+        if (moves == null) {
+            moves = Collections.unmodifiableList(board.generateLegalMoves());
+            cache.put(board.hash, moves);
+        }
+        return moves;
+    }
+
+    public synchronized boolean hasAnyLegalMove(Board board) {
+        List<Move> moves = cache.get(board.hash);
+        if (moves != null) return !moves.isEmpty();
+        return board.hasAnyLegalMove();
+    }
 }
 
 class Piece {
@@ -675,6 +1399,19 @@ class Board {
     public boolean castleBQ = true;
     
     public int enPassantCol = -1; // Spalte, wenn Bauer gerade 2 Felder gezogen
+
+    // Zobrist-Hash der Stellung, wird in makeMove/undoMove mitgeführt
+    public long hash;
+    // Nur die Bauern (gleiche Schlüssel), für die Bauernstruktur-Tabelle der Engine
+    public long pawnHash;
+    // NNUE-Akkumulator, nur während einer Engine-Suche angehängt (copy() übernimmt ihn nicht)
+    NnueAccumulator nnue;
+    // Angriffsfelder der Stellung mit Hash attackMapHash; wird bei Bedarf neu berechnet
+    private AttackMap attackMap;
+    private long attackMapHash;
+    private boolean attackMapValid;
+    // Arbeitsfeld für see(), einmal pro Board statt bei jedem Aufruf (läuft für jeden Schlagzug)
+    private int[] seeGain;
     
     // Letzter Zug zum Highlighten
     public int lastMoveFrom = -1;
@@ -697,6 +1434,71 @@ class Board {
         whiteToMove = true;
         castleWK = true; castleWQ = true; castleBK = true; castleBQ = true;
         enPassantCol = -1;
+        hash = computeHash();
+        pawnHash = computePawnHash();
+    }
+
+    // Hash komplett neu berechnen (nach direktem Setzen von pieces[] aufrufen)
+    public long computeHash() {
+        long h = 0;
+        for (int i = 0; i < 64; i++) {
+            if (pieces[i] != Piece.EMPTY) h ^= Zobrist.PIECES[pieces[i]][i];
+        }
+        h ^= Zobrist.CASTLING[castlingMask()];
+        if (enPassantCol != -1) h ^= Zobrist.EN_PASSANT[enPassantCol];
+        if (!whiteToMove) h ^= Zobrist.BLACK_TO_MOVE;
+        return h;
+    }
+
+    public long computePawnHash() {
+        long h = 0;
+        for (int i = 0; i < 64; i++) {
+            if (Piece.getType(pieces[i]) == PieceType.PAWN) h ^= Zobrist.PIECES[pieces[i]][i];
+        }
+        return h;
+    }
+
+    private int castlingMask() {
+        return (castleWK ? 1 : 0) | (castleWQ ? 2 : 0) | (castleBK ? 4 : 0) | (castleBQ ? 8 : 0);
+    }
+
+    // Gegenstück zu Move.pack(): sucht den passenden legalen Zug (mit Rochade/EP-Flags), sonst null
+    public Move findLegalMove(int packed) {
+        int from = packed & 63;
+        int to = (packed >>> 6) & 63;
+        byte promoType = (byte) ((packed >>> 12) & 7);
+        for (Move m : generateLegalMoves()) {
+            if (m.from != from || m.to != to) continue;
+            if ((m.promotion != Piece.EMPTY) != (promoType != 0)) continue;
+            Move result = m.copy();
+            // Der Generator erzeugt nur Damen-Umwandlungen, andere Figuren hier einsetzen
+            if (promoType != 0) result.promotion = (byte) (whiteToMove ? promoType : promoType | 8);
+            return result;
+        }
+        return null;
+    }
+
+    // Kein Zug möglich? Bricht beim ersten legalen Zug ab, statt alle zu prüfen
+    public boolean hasAnyLegalMove() {
+        AttackMap a = attacks();
+        for (Move m : generatePseudoLegalMoves()) {
+            if (a.isLegal(this, m)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Angriffsfelder der aktuellen Stellung. Pro Stellung nur einmal berechnet: Zuggenerator, SEE
+     * und Bewertung im selben Knoten bekommen dasselbe Objekt. Gilt nur bis zum nächsten makeMove.
+     */
+    AttackMap attacks() {
+        if (attackMap == null) attackMap = new AttackMap();
+        if (!attackMapValid || attackMapHash != hash) {
+            attackMap.compute(this);
+            attackMapHash = hash;
+            attackMapValid = true;
+        }
+        return attackMap;
     }
     
     public Board copy() {
@@ -708,6 +1510,8 @@ class Board {
         b.castleBK = this.castleBK;
         b.castleBQ = this.castleBQ;
         b.enPassantCol = this.enPassantCol;
+        b.hash = this.hash;
+        b.pawnHash = this.pawnHash;
         return b;
     }
 
@@ -720,8 +1524,16 @@ class Board {
         m.prevCastleWQ = castleWQ;
         m.prevCastleBK = castleBK;
         m.prevCastleBQ = castleBQ;
+        m.prevHash = hash;
+        m.prevPawnHash = pawnHash;
+
+        // Alte Rechte/EP aus dem Hash nehmen, neue kommen am Ende wieder rein
+        long h = hash ^ Zobrist.CASTLING[castlingMask()];
+        if (enPassantCol != -1) h ^= Zobrist.EN_PASSANT[enPassantCol];
 
         byte movingPiece = pieces[m.from];
+        h ^= Zobrist.PIECES[movingPiece][m.from];
+        if (m.capturedPiece != Piece.EMPTY) h ^= Zobrist.PIECES[m.capturedPiece][m.to];
         pieces[m.from] = Piece.EMPTY;
         pieces[m.to] = movingPiece;
         
@@ -729,17 +1541,42 @@ class Board {
         if (m.promotion != Piece.EMPTY) {
             pieces[m.to] = m.promotion;
         }
+        h ^= Zobrist.PIECES[pieces[m.to]][m.to];
+
+        // Bauern-Hash: nur wenn ein Bauer zieht, umgewandelt oder geschlagen wird
+        if (Piece.getType(movingPiece) == PieceType.PAWN) {
+            pawnHash ^= Zobrist.PIECES[movingPiece][m.from];
+            if (m.promotion == Piece.EMPTY) pawnHash ^= Zobrist.PIECES[movingPiece][m.to];
+        }
+        if (Piece.getType(m.capturedPiece) == PieceType.PAWN) pawnHash ^= Zobrist.PIECES[m.capturedPiece][m.to];
+
+        if (nnue != null) {
+            nnue.push();
+            nnue.remove(movingPiece, m.from);
+            if (m.capturedPiece != Piece.EMPTY) nnue.remove(m.capturedPiece, m.to);
+            nnue.add(pieces[m.to], m.to);
+        }
 
         // Castle Move Logik (Turm bewegen)
         if (m.isCastle) {
+            int rookFrom = -1, rookTo = -1;
             if (m.to == 62) { // Weiß King Side
-                pieces[61] = pieces[63]; pieces[63] = Piece.EMPTY;
+                rookFrom = 63; rookTo = 61;
             } else if (m.to == 58) { // Weiß Queen Side
-                pieces[59] = pieces[56]; pieces[56] = Piece.EMPTY;
+                rookFrom = 56; rookTo = 59;
             } else if (m.to == 6) { // Schwarz King Side
-                pieces[5] = pieces[7]; pieces[7] = Piece.EMPTY;
+                rookFrom = 7; rookTo = 5;
             } else if (m.to == 2) { // Schwarz Queen Side
-                pieces[3] = pieces[0]; pieces[0] = Piece.EMPTY;
+                rookFrom = 0; rookTo = 3;
+            }
+            if (rookFrom != -1) {
+                byte rook = pieces[rookFrom];
+                pieces[rookTo] = rook; pieces[rookFrom] = Piece.EMPTY;
+                h ^= Zobrist.PIECES[rook][rookFrom] ^ Zobrist.PIECES[rook][rookTo];
+                if (nnue != null) {
+                    nnue.remove(rook, rookFrom);
+                    nnue.add(rook, rookTo);
+                }
             }
         }
         
@@ -751,6 +1588,9 @@ class Board {
             int capturePos = whiteToMove ? m.to + 8 : m.to - 8;
             m.capturedPiece = pieces[capturePos]; // Speichern für undo!
             pieces[capturePos] = Piece.EMPTY; 
+            h ^= Zobrist.PIECES[m.capturedPiece][capturePos];
+            pawnHash ^= Zobrist.PIECES[m.capturedPiece][capturePos];
+            if (nnue != null) nnue.remove(m.capturedPiece, capturePos);
         }
 
         // En Passant Status aktualisieren
@@ -768,6 +1608,10 @@ class Board {
         if (m.to == 56) castleWQ = false;
         if (m.to == 63) castleWK = false;
 
+        h ^= Zobrist.CASTLING[castlingMask()];
+        if (enPassantCol != -1) h ^= Zobrist.EN_PASSANT[enPassantCol];
+        hash = h ^ Zobrist.BLACK_TO_MOVE;
+
         whiteToMove = !whiteToMove;
         lastMoveFrom = m.from;
         lastMoveTo = m.to;
@@ -780,6 +1624,9 @@ class Board {
         castleWQ = m.prevCastleWQ;
         castleBK = m.prevCastleBK;
         castleBQ = m.prevCastleBQ;
+        hash = m.prevHash;
+        pawnHash = m.prevPawnHash;
+        if (nnue != null) nnue.pop();
         
         byte movedPiece = pieces[m.to];
         if (m.promotion != Piece.EMPTY) {
@@ -818,22 +1665,29 @@ class Board {
         }
     }
 
+    // Nur die Anzahl, Umwandlungen zählen vierfach (siehe AttackMap.countLegalMoves)
+    public int countLegalMoves() {
+        return attacks().countLegalMoves(this);
+    }
+
     public List<Move> generateLegalMoves() {
+        AttackMap a = attacks(); // Fesselungen und Schachgeber statt makeMove/isCheck pro Zug
         List<Move> pseudoMoves = generatePseudoLegalMoves();
-        List<Move> legalMoves = new ArrayList<>();
-        
+        List<Move> legalMoves = new ArrayList<>(pseudoMoves.size());
         for (Move m : pseudoMoves) {
-            makeMove(m);
-            if (!isCheck(!whiteToMove)) { // Prüfen ob der Spieler, der gerade gezogen hat (!whiteToMove), im Schach ist
-                legalMoves.add(m);
-            }
-            undoMove(m);
+            if (a.isLegal(this, m)) legalMoves.add(m);
         }
         return legalMoves;
     }
     
     // Prüft ob 'colorWhite' im Schach steht.
     public boolean isCheck(boolean colorWhite) {
+        if (attackMapValid && attackMapHash == hash) {
+            // Schon berechnet (z.B. vom Zuggenerator dieses Knotens): nur nachsehen
+            int color = colorWhite ? AttackMap.WHITE : AttackMap.BLACK;
+            int king = attackMap.king[color];
+            return king < 0 || attackMap.isAttacked(king, color ^ 1);
+        }
         int kingPos = -1;
         byte kingType = colorWhite ? Piece.W_KING : Piece.B_KING;
         for (int i = 0; i < 64; i++) {
@@ -849,6 +1703,69 @@ class Board {
         return isSquareAttacked(kingPos, !colorWhite);
     }
 
+    // Figurenwerte für den Abtausch (unabhängig von getunten Eval-Parametern)
+    private static final int[] SEE_VALUES = { 0, 100, 320, 330, 500, 900, 20000 };
+
+    /**
+     * Static Exchange Evaluation: Materialbilanz, wenn auf m.to abwechselnd immer mit der
+     * billigsten Figur zurückgeschlagen wird (jede Seite darf aufhören). Es wird nichts gezogen;
+     * geschlagene Figuren verschwinden nur aus der Belegung, dadurch werden Röntgen-Angreifer
+     * hinter ihnen sichtbar. Ergebnis aus Sicht der ziehenden Seite.
+     */
+    public int see(Move m) {
+        AttackMap a = attacks();
+        long occupied = a.occupied;
+        if (seeGain == null) seeGain = new int[32];
+        int[] gain = seeGain;
+        int d = 0;
+        gain[0] = m.isEnPassant ? SEE_VALUES[PieceType.PAWN] : SEE_VALUES[Piece.getType(pieces[m.to])];
+        int attackerValue = SEE_VALUES[Piece.getType(pieces[m.from])];
+        if (m.promotion != Piece.EMPTY) {
+            gain[0] += SEE_VALUES[Piece.getType(m.promotion)] - SEE_VALUES[PieceType.PAWN];
+            attackerValue = SEE_VALUES[Piece.getType(m.promotion)];
+        }
+        // Gegner greift weder das Ziel an noch das Startfeld (sonst könnte er durch die ziehende
+        // Figur hindurch zurückschlagen): kein Abtausch, nur der Schlagwert zählt
+        int enemy = whiteToMove ? AttackMap.BLACK : AttackMap.WHITE;
+        if (!m.isEnPassant && !a.isAttacked(m.to, enemy) && !a.isAttacked(m.from, enemy)) return gain[0];
+
+        occupied &= ~(1L << m.from);
+        if (m.isEnPassant) occupied &= ~(1L << (whiteToMove ? m.to + 8 : m.to - 8));
+        boolean sideWhite = !whiteToMove;
+
+        while (d < gain.length - 1) {
+            d++;
+            gain[d] = attackerValue - gain[d - 1]; // Wert, falls die gerade schlagende Figur selbst fällt
+            if (Math.max(-gain[d - 1], gain[d]) < 0) break; // Egal wie es weitergeht, das Ergebnis steht
+            int from = leastValuableAttacker(a, m.to, sideWhite, occupied);
+            if (from < 0) break;
+            occupied &= ~(1L << from);
+            attackerValue = SEE_VALUES[Piece.getType(pieces[from])];
+            sideWhite = !sideWhite;
+        }
+        while (--d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+        }
+        return gain[0];
+    }
+
+    // Billigste Figur der Farbe, die 'square' bei gegebener Belegung angreift, sonst -1.
+    // Langschrittler werden mit der aktuellen Belegung neu gerechnet, so tauchen Röntgen-Angreifer auf.
+    private static int leastValuableAttacker(AttackMap a, int square, boolean byWhite, long occupied) {
+        int off = byWhite ? 0 : 8;
+        // Ein Bauer der Farbe greift 'square' an, wenn ein Bauer der Gegenfarbe von dort ihn angreifen würde
+        long bb = AttackMap.PAWN[byWhite ? AttackMap.BLACK : AttackMap.WHITE][square] & a.pieces[PieceType.PAWN | off];
+        if ((bb &= occupied) != 0) return Long.numberOfTrailingZeros(bb);
+        if ((bb = AttackMap.KNIGHT[square] & a.pieces[PieceType.KNIGHT | off] & occupied) != 0) return Long.numberOfTrailingZeros(bb);
+        long diagonal = AttackMap.bishopAttacks(square, occupied);
+        if ((bb = diagonal & a.pieces[PieceType.BISHOP | off] & occupied) != 0) return Long.numberOfTrailingZeros(bb);
+        long straight = AttackMap.rookAttacks(square, occupied);
+        if ((bb = straight & a.pieces[PieceType.ROOK | off] & occupied) != 0) return Long.numberOfTrailingZeros(bb);
+        if ((bb = (diagonal | straight) & a.pieces[PieceType.QUEEN | off] & occupied) != 0) return Long.numberOfTrailingZeros(bb);
+        if ((bb = AttackMap.KING[square] & a.pieces[PieceType.KING | off] & occupied) != 0) return Long.numberOfTrailingZeros(bb);
+        return -1;
+    }
+
     private boolean isSquareAttacked(int square, boolean byWhite) {
         // Bauerngriffe
         int dir = byWhite ? -1 : 1; // Weiße Bauern greifen nach oben (-), schwarze nach unten (+)
@@ -1029,24 +1946,25 @@ class Board {
                     }
                 }
             }
-            // Castling
-            if (!isCheck(whiteToMove)) { // Darf nicht im Schach sein
+            // Castling (Angriffe aus der AttackMap dieses Knotens)
+            AttackMap a = attacks();
+            if (!a.inCheck()) { // Darf nicht im Schach sein
                 if (whiteToMove) {
                     if (castleWK && pieces[61] == Piece.EMPTY && pieces[62] == Piece.EMPTY && 
-                        !isSquareAttacked(61, false) && !isSquareAttacked(62, false)) { 
+                        !a.isAttacked(61, AttackMap.BLACK) && !a.isAttacked(62, AttackMap.BLACK)) { 
                         Move m = new Move(60, 62); m.isCastle = true; moves.add(m); 
                     }
                     if (castleWQ && pieces[59] == Piece.EMPTY && pieces[58] == Piece.EMPTY && pieces[57] == Piece.EMPTY &&
-                         !isSquareAttacked(59, false) && !isSquareAttacked(58, false)) { 
+                         !a.isAttacked(59, AttackMap.BLACK) && !a.isAttacked(58, AttackMap.BLACK)) { 
                         Move m = new Move(60, 58); m.isCastle = true; moves.add(m); 
                     }
                 } else {
                     if (castleBK && pieces[5] == Piece.EMPTY && pieces[6] == Piece.EMPTY &&
-                         !isSquareAttacked(5, true) && !isSquareAttacked(6, true)) { 
+                         !a.isAttacked(5, AttackMap.WHITE) && !a.isAttacked(6, AttackMap.WHITE)) { 
                         Move m = new Move(4, 6); m.isCastle = true; moves.add(m); 
                     }
                     if (castleBQ && pieces[3] == Piece.EMPTY && pieces[2] == Piece.EMPTY && pieces[1] == Piece.EMPTY &&
-                         !isSquareAttacked(3, true) && !isSquareAttacked(2, true)) { 
+                         !a.isAttacked(3, AttackMap.WHITE) && !a.isAttacked(2, AttackMap.WHITE)) { 
                         Move m = new Move(4, 2); m.isCastle = true; moves.add(m); 
                     }
                 }
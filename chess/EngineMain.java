@@ -0,0 +1,129 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schlanker Einstieg nur für die Engine, ohne AWT/Swing: für Stapeljobs und Skripte, die viele
+ * kurze Prozesse starten und bei denen die Startzeit bis zur ersten Suche zählt.
+ *
+ * Eine FEN pro Zeile (per --fen oder von stdin, "startpos" = Grundstellung), Ausgabe pro Stellung:
+ *   bestmove e2e4 score 31 depth 6 nodes 12345 ms 87
+ *
+ * Schnell wird der Start erst mit den Dateien, die engine.sh build erzeugt:
+ * - Tabellen-Schnappschuss (EngineTables, Standard engine.tables im Arbeitsverzeichnis),
+ * - AppCDS-Archiv der beim Aufwärmen (--warmup) geladenen Klassen.
+ *
+ * Aufruf: java EngineMain [--fen FEN]... [--depth N] [--movetime MS] [--tt MB] [--timing] [--since EPOCH_MS]
+ *         java EngineMain --write-snapshot DATEI
+ *         java EngineMain --warmup
+ *         (--timing schreibt die Startzeit nach stderr, --since ist der Prozessstart laut Skript)
+ */
+public class EngineMain {
+
+    // Lädt beim Aufwärmen alle Klassen der Suche: Rochade, en passant, Umwandlung, Matt
+    private static final String[] WARMUP = {
+        Fen.START,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2P5/8/8/8/8/5k2/K7 w - - 0 1",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+    };
+
+    public static void main(String[] args) throws IOException {
+        long mainStart = System.nanoTime();
+        System.setProperty("java.awt.headless", "true");
+        // Vor der ersten Engine-Klasse setzen, die Werte werden in statischen Initialisierern gelesen
+        if (System.getProperty("chess.log") == null) System.setProperty("chess.log", "WARN");
+        if (System.getProperty("chess.snapshot") == null) System.setProperty("chess.snapshot", "engine.tables");
+        // Große Tabellen kosten beim Start vor allem das Nullen der Seiten (8 MB ~ 10 ms)
+        if (System.getProperty("chess.evalcache.mb") == null) System.setProperty("chess.evalcache.mb", "1");
+
+        List<String> fens = new ArrayList<>();
+        int depth = 64;
+        long movetime = 0;
+        int ttMb = 2;
+        boolean timing = false;
+        long since = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fen": fens.add(args[++i]); break;
+                case "--depth": depth = Integer.parseInt(args[++i]); break;
+                case "--movetime": movetime = Long.parseLong(args[++i]); break;
+                case "--tt": ttMb = Integer.parseInt(args[++i]); break;
+                case "--timing": timing = true; break;
+                case "--since": since = Long.parseLong(args[++i]); break;
+                case "--write-snapshot":
+                    System.setProperty("chess.snapshot", "off"); // Frisch rechnen, nicht den alten umkopieren
+                    System.out.println(EngineTables.write(Paths.get(args[++i])));
+                    return;
+                case "--warmup":
+                    warmup();
+                    return;
+                default:
+                    System.out.println("Aufruf: java EngineMain [--fen FEN]... [--depth N] [--movetime MS] [--tt MB] "
+                            + "[--timing] [--since EPOCH_MS] | --write-snapshot DATEI | --warmup");
+                    return;
+            }
+        }
+        if (depth == 64 && movetime == 0) movetime = 1000;
+
+        Engine engine = new Engine(ttMb > 0 ? new TranspositionTable(ttMb) : null, false);
+        boolean first = true;
+        if (!fens.isEmpty()) {
+            for (String fen : fens) {
+                search(engine, fen, depth, movetime);
+                if (first && timing) printTiming(mainStart, since);
+                first = false;
+            }
+            return;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        for (String line; (line = in.readLine()) != null; ) {
+            if (line.isBlank()) continue;
+            search(engine, line, depth, movetime);
+            if (first && timing) printTiming(mainStart, since);
+            first = false;
+        }
+    }
+
+    private static void search(Engine engine, String fen, int depth, long movetime) {
+        Board board;
+        try {
+            board = Fen.parse(fen.equals("startpos") ? Fen.START : fen);
+        } catch (RuntimeException e) {
+            System.out.println("error " + e.getMessage());
+            return;
+        }
+        long t = System.nanoTime();
+        Move best = engine.getBestMove(board, depth, movetime);
+        long ms = (System.nanoTime() - t) / 1_000_000;
+        // StringBuilder statt '+': die erste indy-Verkettung mit vielen Teilen kostet im Interpreter
+        // an die 100 ms für das Erzeugen der LambdaForms, und die landen nicht im CDS-Archiv
+        StringBuilder sb = new StringBuilder("bestmove ");
+        sb.append(best == null ? "none" : San.uci(best)).append(" score ").append(best == null ? 0 : engine.getLastScore())
+                .append(" depth ").append(engine.getCompletedDepth()).append(" nodes ").append(engine.getNodes())
+                .append(" ms ").append(ms);
+        System.out.println(sb);
+    }
+
+    private static void printTiming(long mainStart, long since) {
+        long fromMain = (System.nanoTime() - mainStart) / 1_000_000;
+        StringBuilder sb = new StringBuilder("Erste Suche fertig nach ").append(fromMain).append(" ms ab main");
+        if (since > 0) sb.append(", ").append(System.currentTimeMillis() - since).append(" ms ab Prozessstart");
+        sb.append(EngineTables.active() ? " (Tabellen aus Schnappschuss)" : " (Tabellen berechnet)");
+        System.err.println(sb);
+    }
+
+    // Für die AppCDS-Aufzeichnung (-XX:ArchiveClassesAtExit): alles laden, was eine Suche braucht
+    private static void warmup() {
+        Engine engine = new Engine(new TranspositionTable(1), false);
+        for (String fen : WARMUP) {
+            Board board = Fen.parse(fen);
+            Move best = engine.getBestMove(board, 4, 0);
+            if (best != null) San.uci(best);
+        }
+        System.out.println("Aufgewärmt: " + WARMUP.length + " Stellungen");
+    }
+}
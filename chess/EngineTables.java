@@ -0,0 +1,190 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Schnappschuss der vorberechneten Tabellen (Zobrist-Schlüssel, Angriffstabellen, geladene
+ * Bewertungsparameter) als Binärdatei, die beim Start mit einem einzigen read geladen wird.
+ *
+ * Gedacht für kurzlebige Prozesse (EngineMain in Stapeljobs): beim Start laufen die statischen
+ * Initialisierer noch im Interpreter, dort ist ein Blockkopieren aus dem Puffer deutlich
+ * billiger als die Schleifen und das Parsen der Textdatei.
+ *
+ * Aktiv mit -Dchess.snapshot=datei. Fehlt die Datei, passen Magic, Version oder Prüfsumme nicht
+ * oder fehlt ein Abschnitt, rechnet jede Klasse wie bisher selbst - die Datei ist nur ein Cache.
+ * Wer die Erzeugung einer der Tabellen ändert, zählt VERSION hoch.
+ *
+ * Format: MAGIC, VERSION, Anzahl Abschnitte, CRC32 der restlichen Datei; je Abschnitt Kennung,
+ * Anzahl longs und die longs selbst.
+ *
+ * Geschrieben wird die Datei mit "java EngineMain --write-snapshot DATEI".
+ */
+final class EngineTables {
+
+    static final int ZOBRIST = 1;
+    static final int ATTACKS = 2;
+    static final int EVAL_PARAMS = 3;
+
+    private static final int MAGIC = 0x4354_4142; // "CTAB"
+    static final int VERSION = 1;
+    private static final int HEADER = 16;
+
+    // Index = Kennung, null = Abschnitt nicht vorhanden; alles null ohne gültige Datei
+    private static final LongBuffer[] SECTIONS = open(System.getProperty("chess.snapshot"));
+
+    private EngineTables() {}
+
+    /** true, wenn die Datei gültig geladen wurde. */
+    static boolean active() {
+        for (LongBuffer b : SECTIONS) if (b != null) return true;
+        return false;
+    }
+
+    /**
+     * Füllt die Zeilen der Reihe nach aus dem Abschnitt. false (und nichts verändert), wenn der
+     * Abschnitt fehlt oder seine Länge nicht zu den Zeilen passt.
+     */
+    static boolean load(int section, long[][] rows) {
+        LongBuffer b = SECTIONS[section];
+        if (b == null) return false;
+        long total = 0;
+        for (long[] row : rows) total += row.length;
+        if (total != b.capacity()) return false;
+        LongBuffer in = b.duplicate();
+        for (long[] row : rows) in.get(row);
+        return true;
+    }
+
+    /** Zeilen in Abschnittsreihenfolge: long[] zählt als eine Zeile, long[][] als seine Zeilen. */
+    static long[][] rows(Object... tables) {
+        List<long[]> rows = new ArrayList<>();
+        for (Object t : tables) {
+            if (t instanceof long[]) rows.add((long[]) t);
+            else for (long[] row : (long[][]) t) rows.add(row);
+        }
+        return rows.toArray(new long[0][]);
+    }
+
+    /**
+     * Die beim Schreiben geladenen Bewertungsparameter, wenn 'file' seitdem unverändert ist
+     * (gleicher Pfad, gleiche Größe, gleiche Änderungszeit), sonst null.
+     */
+    static int[] evalParams(Path file, int size) {
+        LongBuffer b = SECTIONS[EVAL_PARAMS];
+        if (b == null || b.capacity() != 3 + size) return null;
+        long[] key = evalParamsKey(file);
+        for (int i = 0; i < key.length; i++) {
+            if (b.get(i) != key[i]) return null;
+        }
+        int[] params = new int[size];
+        for (int i = 0; i < size; i++) params[i] = (int) b.get(3 + i);
+        return params;
+    }
+
+    // java.io.File statt Files.readAttributes: lädt beim Start deutlich weniger Klassen
+    private static long[] evalParamsKey(Path file) {
+        File f = file.toAbsolutePath().normalize().toFile();
+        return new long[] { f.getPath().hashCode(), f.length(), f.lastModified() };
+    }
+
+    private static LongBuffer[] open(String file) {
+        LongBuffer[] sections = new LongBuffer[EVAL_PARAMS + 1];
+        if (file == null || file.equals("off")) return sections;
+        Path path = Paths.get(file);
+        if (!Files.isRegularFile(path)) return sections;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Gelesen statt gemappt: das erste FileChannel.map kostet unter Java 17 rund 20 ms
+            // (MappedByteBuffer wird reflektiv gebaut), das Lesen der paar KB gut 1 ms
+            ByteBuffer buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // Weiterlesen
+            }
+            buf.flip();
+            if (buf.remaining() < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                AsyncLog.warn("Tabellen-Schnappschuss " + path + " hat eine andere Version, rechne selbst");
+                return sections;
+            }
+            int count = buf.getInt();
+            int crc = buf.getInt();
+            CRC32 check = new CRC32();
+            check.update(buf.duplicate());
+            if ((int) check.getValue() != crc) throw new IOException("Prüfsumme falsch");
+            LongBuffer[] found = new LongBuffer[sections.length];
+            for (int i = 0; i < count; i++) {
+                int id = buf.getInt();
+                int longs = buf.getInt();
+                ByteBuffer data = buf.slice();
+                data.limit(longs * 8);
+                if (id > 0 && id < found.length) found[id] = data.asLongBuffer();
+                buf.position(buf.position() + longs * 8);
+            }
+            return found;
+        } catch (IOException | RuntimeException e) {
+            AsyncLog.warn("Tabellen-Schnappschuss " + path + " unbrauchbar, rechne selbst: " + e.getMessage());
+            return sections;
+        }
+    }
+
+    /**
+     * Schreibt die Tabellen so, wie sie in diesem Prozess berechnet wurden. Sollte mit
+     * -Dchess.snapshot=off laufen, sonst wird nur der alte Schnappschuss umkopiert.
+     */
+    static String write(Path file) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        List<long[]> data = new ArrayList<>();
+        ids.add(ZOBRIST);
+        data.add(concat(rows(Zobrist.PIECES, Zobrist.CASTLING, Zobrist.EN_PASSANT, new long[] { Zobrist.BLACK_TO_MOVE })));
+        ids.add(ATTACKS);
+        data.add(concat(AttackMap.snapshotRows()));
+        Path params = EvalParams.path();
+        if (Files.isRegularFile(params)) {
+            int[] values = EvalParams.read(params); // Unbrauchbare Datei: lieber gar kein Schnappschuss
+            long[] key = evalParamsKey(params);
+            long[] section = new long[key.length + values.length];
+            System.arraycopy(key, 0, section, 0, key.length);
+            for (int i = 0; i < values.length; i++) section[key.length + i] = values[i];
+            ids.add(EVAL_PARAMS);
+            data.add(section);
+        }
+
+        int bytes = HEADER;
+        for (long[] d : data) bytes += 8 + d.length * 8;
+        ByteBuffer buf = ByteBuffer.allocate(bytes);
+        buf.position(HEADER);
+        for (int i = 0; i < ids.size(); i++) {
+            buf.putInt(ids.get(i)).putInt(data.get(i).length);
+            for (long v : data.get(i)) buf.putLong(v);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER, bytes - HEADER);
+        buf.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, ids.size()).putInt(12, (int) crc.getValue());
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, buf.array());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return String.format("%s: %d Abschnitte, %d Bytes%s", file, ids.size(), bytes,
+                ids.contains(EVAL_PARAMS) ? ", Parameter aus " + params : "");
+    }
+
+    private static long[] concat(long[][] rows) {
+        int n = 0;
+        for (long[] row : rows) n += row.length;
+        long[] all = new long[n];
+        int pos = 0;
+        for (long[] row : rows) {
+            System.arraycopy(row, 0, all, pos, row.length);
+            pos += row.length;
+        }
+        return all;
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direkt adressierter Cache für die statische Bewertung: Zobrist-Hash -> Score der Seite am Zug.
+ *
+ * Ein Eintrag ist ein einziges long (obere 40 Bit Hash, untere 24 Bit Score), geschrieben und
+ * gelesen wird also atomar und ohne Lock; mehrere Engines in verschiedenen Threads teilen sich
+ * einen Cache. Der Hash wird mit der Kennung der Bewertung gesalzen, Einträge einer anderen
+ * Parameterdatei oder eines anderen Netzes passen deshalb nie.
+ *
+ * Die Treffer zählt jede Engine selbst und meldet sie nach der Suche per count(), ein
+ * gemeinsamer Zähler pro Abfrage kostet in der Suche mehr, als der Cache spart.
+ */
+final class EvalCache {
+
+    private static final long KEY_MASK = 0xFFFF_FFFF_FF00_0000L;
+    private static final int SCORE_LIMIT = 1 << 23; // 24 Bit mit Vorzeichen
+
+    private static final Object SHARED_LOCK = new Object();
+    private static EvalCache shared;
+
+    private final long[] entries;
+    private final int mask;
+    private final long salt;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    EvalCache(int megabytes, long salt) {
+        long wanted = Math.max(1024, (long) megabytes * 1024 * 1024 / 8);
+        int size = Integer.highestOneBit((int) Math.min(wanted, 1 << 30));
+        entries = new long[size];
+        mask = size - 1;
+        // Gemischt, damit auch kleine Fingerabdrücke alle Schlüsselbits verändern
+        long z = salt * 0x9E37_79B9_7F4A_7C15L;
+        this.salt = z ^ (z >>> 29);
+    }
+
+    /** Gemeinsamer Cache aller Engines, Größe per -Dchess.evalcache.mb (Standard 8, 0 = aus). */
+    static EvalCache shared() {
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                int mb = Integer.getInteger("chess.evalcache.mb", 8);
+                if (mb <= 0) return null;
+                shared = new EvalCache(mb, Engine.evalFingerprint());
+            }
+            return shared;
+        }
+    }
+
+    /** Bewertung zum Hash oder Integer.MIN_VALUE bei Fehltreffer. */
+    int probe(long hash) {
+        long key = hash ^ salt;
+        long e = entries[(int) key & mask];
+        if (e != 0 && ((e ^ key) & KEY_MASK) == 0) return (int) (e << 40 >> 40); // Vorzeichen der 24 Bit erweitern
+        return Integer.MIN_VALUE;
+    }
+
+    void store(long hash, int score) {
+        if (score >= SCORE_LIMIT || score < -SCORE_LIMIT) return; // Passt nicht, dann eben ohne Cache
+        long key = hash ^ salt;
+        entries[(int) key & mask] = (key & KEY_MASK) | (score & 0xFF_FFFFL);
+    }
+
+    void count(long hitCount, long missCount) {
+        hits.add(hitCount);
+        misses.add(missCount);
+    }
+
+    long getHits() { return hits.sum(); }
+    long getMisses() { return misses.sum(); }
+
+    String describe() {
+        long h = hits.sum(), total = h + misses.sum();
+        return String.format("%d Abfragen, Trefferquote %.1f%%", total, total == 0 ? 0.0 : 100.0 * h / total);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * FEN lesen und schreiben. Feld 0 ist a8, Feld 63 ist h1 - genau wie in Board.
+ * Board kennt keine Halbzug-/Zugzähler, beim Schreiben steht dort immer "0 1".
+ */
+final class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private Fen() {}
+
+    public static Board parse(String fen) {
+        String[] parts = fen.trim().split("\\s+");
+        if (parts.length < 2) throw new IllegalArgumentException("FEN unvollständig: " + fen);
+
+        Board b = new Board();
+        int row = 0, col = 0;
+        for (int i = 0; i < parts[0].length(); i++) {
+            char c = parts[0].charAt(i);
+            if (c == '/') {
+                if (col != 8) throw new IllegalArgumentException("FEN Reihe " + (8 - row) + " hat nicht 8 Felder: " + fen);
+                row++; col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                byte p = pieceFromChar(c);
+                if (p == Piece.EMPTY || row > 7 || col > 7) throw new IllegalArgumentException("FEN ungültig: " + fen);
+                b.pieces[row * 8 + col] = p;
+                col++;
+            }
+        }
+        if (row != 7 || col != 8) throw new IllegalArgumentException("FEN Brett unvollständig: " + fen);
+
+        b.whiteToMove = parts[1].equals("w");
+        String castling = parts.length > 2 ? parts[2] : "-";
+        b.castleWK = castling.indexOf('K') >= 0;
+        b.castleWQ = castling.indexOf('Q') >= 0;
+        b.castleBK = castling.indexOf('k') >= 0;
+        b.castleBQ = castling.indexOf('q') >= 0;
+        String ep = parts.length > 3 ? parts[3] : "-";
+        b.enPassantCol = ep.equals("-") ? -1 : parseSquare(ep) % 8;
+        b.hash = b.computeHash();
+        b.pawnHash = b.computePawnHash();
+        return b;
+    }
+
+    public static String toFen(Board b) {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                byte p = b.pieces[row * 8 + col];
+                if (p == Piece.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) { sb.append(empty); empty = 0; }
+                sb.append(pieceChar(p));
+            }
+            if (empty > 0) sb.append(empty);
+            if (row < 7) sb.append('/');
+        }
+        sb.append(b.whiteToMove ? " w " : " b ");
+        int len = sb.length();
+        if (b.castleWK) sb.append('K');
+        if (b.castleWQ) sb.append('Q');
+        if (b.castleBK) sb.append('k');
+        if (b.castleBQ) sb.append('q');
+        if (sb.length() == len) sb.append('-');
+        sb.append(' ');
+        if (b.enPassantCol == -1) {
+            sb.append('-');
+        } else {
+            // Das übersprungene Feld liegt hinter dem Bauern, der gerade gezogen hat
+            sb.append(squareName((b.whiteToMove ? 2 : 5) * 8 + b.enPassantCol));
+        }
+        sb.append(" 0 1");
+        return sb.toString();
+    }
+
+    public static char pieceChar(byte p) {
+        return ".PNBRQK..pnbrqk".charAt(p);
+    }
+
+    public static byte pieceFromChar(char c) {
+        switch (c) {
+            case 'P': return Piece.W_PAWN;
+            case 'N': return Piece.W_KNIGHT;
+            case 'B': return Piece.W_BISHOP;
+            case 'R': return Piece.W_ROOK;
+            case 'Q': return Piece.W_QUEEN;
+            case 'K': return Piece.W_KING;
+            case 'p': return Piece.B_PAWN;
+            case 'n': return Piece.B_KNIGHT;
+            case 'b': return Piece.B_BISHOP;
+            case 'r': return Piece.B_ROOK;
+            case 'q': return Piece.B_QUEEN;
+            case 'k': return Piece.B_KING;
+            default: return Piece.EMPTY;
+        }
+    }
+
+    // "e4" -> Index in Board.pieces
+    public static int parseSquare(String s) {
+        if (s.length() != 2) throw new IllegalArgumentException("Ungültiges Feld: " + s);
+        int col = s.charAt(0) - 'a';
+        int rank = s.charAt(1) - '1';
+        if (col < 0 || col > 7 || rank < 0 || rank > 7) throw new IllegalArgumentException("Ungültiges Feld: " + s);
+        return (7 - rank) * 8 + col;
+    }
+
+    public static String squareName(int index) {
+        return "" + (char) ('a' + index % 8) + (char) ('8' - index / 8);
+    }
+}
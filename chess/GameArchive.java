@@ -0,0 +1,654 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Kompaktes Partie-Archiv. Ein Zug ist sein Index in Board.generateLegalMoves(), mit genau so
+ * vielen Bits, wie die Anzahl legaler Züge braucht (meist 5-6), dazu 2 Bit Figur bei
+ * Umwandlungen (der Generator kennt nur Damen-Umwandlungen). Die Reihenfolge des Zuggenerators
+ * ist damit Teil des Formats: ändert sie sich, muss VERSION hoch.
+ *
+ * Aufbau der Datei:
+ *   Kopf     MAGIC, VERSION, Reserve (16 Byte)
+ *   Blöcke   je Rohlänge, komprimierte Länge, Partien, CRC32, dann Deflate-Daten
+ *   Index    je Block Dateiposition und Partienanzahl
+ *   Schluss  Indexposition, Blockanzahl, MAGIC (16 Byte)
+ * Ein Block enthält bis zu BLOCK_GAMES Partien, vorne die Länge jeder Partie, damit der Zugriff
+ * per Nummer nur einen Block entpackt und darin springt. Fehlt der Index (Absturz beim
+ * Schreiben), wird er beim Öffnen aus den Blockköpfen neu aufgebaut; kaputte Blöcke am Ende
+ * fallen an der Prüfsumme auf.
+ *
+ * Eine Partie: Flags (Ergebnis, Fehler), Tags, ggf. Fehlertext, Halbzüge, Zug-Bits. Die Bits
+ * stehen am Ende, ein Suchlauf nur über die Köpfe springt mit der Partielänge darüber.
+ *
+ * Aufruf: java GameArchive pack partien.pgn archiv.garc
+ *         java GameArchive scan archiv.garc [--threads T] [--headers]
+ *         java GameArchive get archiv.garc NUMMER
+ */
+public class GameArchive implements Closeable {
+
+    private static final int MAGIC = 0x4741_5243; // "GARC"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int BLOCK_HEADER = 16;
+    private static final int TRAILER = 16;
+    private static final int BLOCK_GAMES = 1024;
+    private static final int BLOCK_BYTES = 128 << 10; // Unkomprimiert, dann wird spätestens geschrieben
+    private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    // Ein gemeinsamer Schreiber für appendLater; der Thread endet, wenn eine Weile nichts ansteht
+    private static final ThreadPoolExecutor APPENDER = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> new Thread(r, "game-archive"));
+    static {
+        APPENDER.allowCoreThreadTimeOut(true);
+    }
+    private static final Map<Path, List<PgnGame>> PENDING = new HashMap<>(); // Bewacht durch sich selbst
+
+    private final FileChannel channel;
+    private long[] blockOffset;
+    private long[] firstGame; // Eine Partie mehr als Blöcke: firstGame[blocks] = Gesamtzahl
+    private int blocks;
+    private long dataEnd;
+
+    private GameArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        loadIndex();
+    }
+
+    public static GameArchive open(Path file) throws IOException {
+        return new GameArchive(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /** Öffnet das Archiv zum Anhängen (legt es bei Bedarf an). close() schreibt den Index. */
+    public static Writer append(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            if (ch.size() == 0) {
+                ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+                head.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+                writeFully(ch, head, 0);
+            }
+            return new Writer(new GameArchive(ch));
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Hängt die Partie im Hintergrund an. Alle Partien, die beim Schreiben anstehen, landen
+     * zusammen in einem Block; für Massenimport append() benutzen.
+     */
+    static CompletableFuture<Void> appendLater(Path file, PgnGame game) {
+        synchronized (PENDING) {
+            PENDING.computeIfAbsent(file, f -> new ArrayList<>()).add(game);
+        }
+        return CompletableFuture.runAsync(() -> flushPending(file), APPENDER);
+    }
+
+    private static void flushPending(Path file) {
+        List<PgnGame> games;
+        synchronized (PENDING) {
+            games = PENDING.remove(file);
+        }
+        if (games == null) return; // Schon von einer früheren Aufgabe mitgeschrieben
+        try (Writer w = append(file)) {
+            for (PgnGame game : games) w.add(game);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        AsyncLog.setLevel(AsyncLog.Level.INFO);
+        if (args.length >= 3 && args[0].equals("pack")) {
+            pack(Paths.get(args[1]), Paths.get(args[2]));
+        } else if (args.length >= 2 && args[0].equals("scan")) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            boolean headers = false;
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--headers": headers = true; break;
+                    default: throw new IllegalArgumentException("Unbekannte Option: " + args[i]);
+                }
+            }
+            scan(Paths.get(args[1]), threads, headers);
+        } else if (args.length >= 3 && args[0].equals("get")) {
+            try (GameArchive archive = open(Paths.get(args[1]))) {
+                System.out.print(toPgn(archive.get(Long.parseLong(args[2]))));
+            }
+        } else {
+            System.out.println("Aufruf: java GameArchive pack partien.pgn archiv.garc");
+            System.out.println("        java GameArchive scan archiv.garc [--threads T] [--headers]");
+            System.out.println("        java GameArchive get archiv.garc NUMMER");
+        }
+    }
+
+    // PGN parallel lesen und kodieren, in Dateireihenfolge anhängen
+    private static void pack(Path pgn, Path out) throws Exception {
+        long start = System.nanoTime();
+        AtomicLong plies = new AtomicLong();
+        Map<Long, byte[]> waiting = new HashMap<>();
+        long[] next = {0};
+        long games;
+        long before = Files.exists(out) ? Files.size(out) : 0;
+        try (Writer writer = append(out)) {
+            games = new PgnReader().read(pgn, game -> {
+                byte[] encoded = encode(game);
+                plies.addAndGet(game.moves.length);
+                synchronized (waiting) {
+                    waiting.put(game.number, encoded);
+                    byte[] e;
+                    try {
+                        while ((e = waiting.remove(next[0])) != null) {
+                            writer.addEncoded(e);
+                            next[0]++;
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long pgnBytes = Files.size(pgn), archiveBytes = Files.size(out) - before; // Beim Anhängen nur der Zuwachs
+        System.out.printf("%d Partien, %d Halbzüge in %.1f s: %,d -> %,d Bytes (%.1fx, %.2f Bytes/Halbzug)%n", games,
+                plies.get(), seconds, pgnBytes, archiveBytes, (double) pgnBytes / archiveBytes,
+                (double) archiveBytes / Math.max(1, plies.get()));
+    }
+
+    private static void scan(Path file, int threads, boolean headersOnly) throws Exception {
+        long start = System.nanoTime();
+        AtomicLong plies = new AtomicLong();
+        AtomicLong[] results = new AtomicLong[RESULTS.length];
+        for (int i = 0; i < results.length; i++) results[i] = new AtomicLong();
+        long games;
+        try (GameArchive archive = open(file)) {
+            games = archive.read(threads, !headersOnly, game -> {
+                if (game.moves != null) plies.addAndGet(game.moves.length);
+                results[resultIndex(game.result)].incrementAndGet();
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d Partien, %d Halbzüge in %.2f s (%.0f Partien/min)%n", games, plies.get(), seconds,
+                games / seconds * 60);
+        System.out.printf("1-0: %d, 0-1: %d, 1/2-1/2: %d, *: %d%n", results[1].get(), results[2].get(),
+                results[3].get(), results[0].get());
+    }
+
+    public long size() {
+        return firstGame[blocks];
+    }
+
+    /** Partie per Nummer (0 = erste): ein Block wird gelesen und entpackt. */
+    public PgnGame get(long number) throws IOException {
+        if (number < 0 || number >= size()) throw new IndexOutOfBoundsException("Partie " + number + " von " + size());
+        int b = Arrays.binarySearch(firstGame, 0, blocks + 1, number);
+        if (b < 0) b = -b - 2;
+        ByteBuffer raw = readBlock(b, new Inflater());
+        int count = readVarInt(raw);
+        int skip = (int) (number - firstGame[b]);
+        int pos = 0;
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) lengths[i] = readVarInt(raw);
+        for (int i = 0; i < skip; i++) pos += lengths[i];
+        raw.position(raw.position() + pos);
+        return decode(number, raw, raw.position() + lengths[skip], true);
+    }
+
+    /**
+     * Entpackt alle Partien mit 'threads' Threads; consumer wird wie bei PgnReader.read
+     * gleichzeitig und nicht in Reihenfolge aufgerufen (PgnGame.number ist die Archivnummer).
+     * @return Anzahl der Partien
+     */
+    public long read(int threads, Consumer<PgnGame> consumer) throws IOException, InterruptedException {
+        return read(threads, true, consumer);
+    }
+
+    /**
+     * Wie read, mit withMoves = false aber nur Tags, Ergebnis und Fehler (moves bleibt null).
+     * Das Nachspielen der Züge kostet beim Lesen fast alles; für Suchen nach Spieler, Datum oder
+     * Ergebnis reicht der Kopf, die gefundenen Partien holt man dann mit get().
+     */
+    public long read(int threads, boolean withMoves, Consumer<PgnGame> consumer) throws IOException, InterruptedException {
+        AtomicInteger nextBlock = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[Math.max(1, threads)];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                Inflater inflater = new Inflater();
+                try {
+                    int b;
+                    while ((b = nextBlock.getAndIncrement()) < blocks && failure.get() == null) {
+                        ByteBuffer raw = readBlock(b, inflater);
+                        int count = readVarInt(raw);
+                        int[] lengths = new int[count];
+                        for (int i = 0; i < count; i++) lengths[i] = readVarInt(raw);
+                        for (int i = 0; i < count; i++) {
+                            int end = raw.position() + lengths[i];
+                            consumer.accept(decode(firstGame[b] + i, raw, end, withMoves));
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inflater.end();
+                }
+            }, "archive-reader-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        Exception e = failure.get();
+        if (e instanceof IOException) throw (IOException) e;
+        if (e != null) throw (RuntimeException) e;
+        return size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------------------------
+    // Datei: Index und Blöcke
+    // ---------------------------
+
+    private void loadIndex() throws IOException {
+        long size = channel.size();
+        ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, head, 0);
+        if (head.getInt(0) != MAGIC) throw new IOException("Kein Partie-Archiv");
+        if (head.getInt(4) != VERSION) throw new IOException("Archiv-Version " + head.getInt(4) + ", erwartet " + VERSION);
+
+        if (size >= HEADER + TRAILER) {
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, trailer, size - TRAILER);
+            long indexPos = trailer.getLong(0);
+            int count = trailer.getInt(8);
+            if (trailer.getInt(12) == MAGIC && count >= 0 && indexPos >= HEADER
+                    && indexPos + 12L * count + TRAILER == size) {
+                ByteBuffer ix = ByteBuffer.allocate(12 * count).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, ix, indexPos);
+                allocateIndex(count);
+                for (int b = 0; b < count; b++) {
+                    addBlock(ix.getLong(12 * b), ix.getInt(12 * b + 8));
+                }
+                dataEnd = indexPos;
+                return;
+            }
+        }
+        recoverIndex(size);
+    }
+
+    // Kein gültiger Schluss: Blockköpfe von vorne ablaufen, bis einer nicht passt
+    private void recoverIndex(long size) throws IOException {
+        allocateIndex(64);
+        long pos = HEADER;
+        ByteBuffer bh = ByteBuffer.allocate(BLOCK_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        while (pos + BLOCK_HEADER <= size) {
+            bh.clear();
+            readFully(channel, bh, pos);
+            int compressed = bh.getInt(4), games = bh.getInt(8);
+            if (compressed <= 0 || games <= 0 || pos + BLOCK_HEADER + compressed > size) break;
+            ByteBuffer data = ByteBuffer.allocate(compressed);
+            readFully(channel, data, pos + BLOCK_HEADER);
+            crc.reset();
+            crc.update(data.array(), 0, compressed);
+            if ((int) crc.getValue() != bh.getInt(12)) break;
+            addBlock(pos, games);
+            pos += BLOCK_HEADER + compressed;
+        }
+        dataEnd = pos;
+        if (pos < size) AsyncLog.warn("Partie-Archiv: Index neu aufgebaut, " + (size - pos) + " Bytes am Ende verworfen");
+    }
+
+    private void allocateIndex(int capacity) {
+        blockOffset = new long[Math.max(1, capacity)];
+        firstGame = new long[Math.max(1, capacity) + 1];
+        blocks = 0;
+    }
+
+    private void addBlock(long offset, int games) {
+        if (blocks == blockOffset.length) {
+            blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+            firstGame = Arrays.copyOf(firstGame, blocks * 2 + 1);
+        }
+        blockOffset[blocks] = offset;
+        firstGame[blocks + 1] = firstGame[blocks] + games;
+        blocks++;
+    }
+
+    private ByteBuffer readBlock(int b, Inflater inflater) throws IOException {
+        ByteBuffer bh = ByteBuffer.allocate(BLOCK_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, bh, blockOffset[b]);
+        byte[] compressed = new byte[bh.getInt(4)];
+        readFully(channel, ByteBuffer.wrap(compressed), blockOffset[b] + BLOCK_HEADER);
+        byte[] raw = new byte[bh.getInt(0)];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            if (inflater.inflate(raw) != raw.length) throw new IOException("Block " + b + " unvollständig");
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + b + " beschädigt: " + e.getMessage());
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Archiv zu kurz");
+            pos += n;
+        }
+        buf.flip();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+    }
+
+    /** Schreibt Partien der Reihe nach; nicht threadsicher. */
+    public static final class Writer implements Closeable {
+        private final GameArchive archive;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final ByteArrayOutputStream lengths = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream games = new ByteArrayOutputStream(BLOCK_BYTES);
+        private int pending;
+
+        private Writer(GameArchive archive) throws IOException {
+            this.archive = archive;
+            // Alten Index sofort abschneiden: stürzt das Schreiben ab, findet recoverIndex die Blöcke
+            archive.channel.truncate(archive.dataEnd);
+        }
+
+        public long size() {
+            return archive.size() + pending;
+        }
+
+        public void add(PgnGame game) throws IOException {
+            addEncoded(encode(game));
+        }
+
+        /** Eine mit encode() vorbereitete Partie; so kann parallel kodiert und der Reihe nach geschrieben werden. */
+        public void addEncoded(byte[] game) throws IOException {
+            writeVarInt(lengths, game.length);
+            games.write(game, 0, game.length);
+            pending++;
+            if (pending == BLOCK_GAMES || games.size() >= BLOCK_BYTES) flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if (pending == 0) return;
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(games.size() + lengths.size() + 5);
+            writeVarInt(raw, pending);
+            lengths.writeTo(raw);
+            games.writeTo(raw);
+            byte[] input = raw.toByteArray();
+
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] out = new byte[input.length + input.length / 8 + 64];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == out.length) out = Arrays.copyOf(out, out.length * 2);
+                len += deflater.deflate(out, len, out.length - len);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(out, 0, len);
+
+            ByteBuffer bh = ByteBuffer.allocate(BLOCK_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            bh.putInt(input.length).putInt(len).putInt(pending).putInt((int) crc.getValue()).flip();
+            long pos = archive.dataEnd;
+            writeFully(archive.channel, bh, pos);
+            writeFully(archive.channel, ByteBuffer.wrap(out, 0, len), pos + BLOCK_HEADER);
+            archive.addBlock(pos, pending);
+            archive.dataEnd = pos + BLOCK_HEADER + len;
+            lengths.reset();
+            games.reset();
+            pending = 0;
+        }
+
+        /** Letzten Block und Index schreiben. */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+                ByteBuffer ix = ByteBuffer.allocate(12 * archive.blocks + TRAILER).order(ByteOrder.LITTLE_ENDIAN);
+                for (int b = 0; b < archive.blocks; b++) {
+                    ix.putLong(archive.blockOffset[b]).putInt((int) (archive.firstGame[b + 1] - archive.firstGame[b]));
+                }
+                ix.putLong(archive.dataEnd).putInt(archive.blocks).putInt(MAGIC).flip();
+                writeFully(archive.channel, ix, archive.dataEnd);
+                archive.channel.truncate(archive.dataEnd + 12L * archive.blocks + TRAILER);
+                archive.channel.force(false);
+            } finally {
+                deflater.end();
+                archive.close();
+            }
+        }
+    }
+
+    // ---------------------------
+    // Kodierung einer Partie
+    // ---------------------------
+
+    /**
+     * Partie als Bytes; IllegalArgumentException, wenn ein Zug in seiner Stellung nicht legal ist.
+     * Partien ohne Züge (auch solche mit unbrauchbarem FEN-Tag) werden nur mit Kopf gespeichert.
+     */
+    static byte[] encode(PgnGame game) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + game.moves.length);
+        int result = resultIndex(game.result);
+        out.write(result | (game.error != null ? 4 : 0));
+        writeVarInt(out, game.tags.size());
+        for (Map.Entry<String, String> tag : game.tags.entrySet()) {
+            writeString(out, tag.getKey());
+            writeString(out, tag.getValue());
+        }
+        if (game.error != null) writeString(out, game.error);
+        writeVarInt(out, game.moves.length); // Die Zug-Bits stehen am Ende, wer sie nicht braucht, springt drüber
+
+        BitWriter bits = new BitWriter(out);
+        Board b = game.moves.length == 0 ? null : game.startBoard(); // Ohne Züge evtl. kein gültiger FEN-Tag
+        for (int ply = 0; ply < game.moves.length; ply++) {
+            int packed = game.moves[ply];
+            int from = packed & 63, to = (packed >>> 6) & 63, promoType = (packed >>> 12) & 7;
+            List<Move> legal = b.generateLegalMoves();
+            int index = -1;
+            for (int i = 0; i < legal.size(); i++) {
+                Move m = legal.get(i);
+                if (m.from == from && m.to == to && (m.promotion != Piece.EMPTY) == (promoType != 0)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) throw new IllegalArgumentException("Partie " + game.number + ", Halbzug " + (ply + 1) + " nicht legal");
+            bits.write(index, width(legal.size()));
+            Move move = legal.get(index).copy();
+            if (promoType != 0) {
+                bits.write(PieceType.QUEEN - promoType, 2); // Dame 0, Turm 1, Läufer 2, Springer 3
+                move.promotion = (byte) (b.whiteToMove ? promoType : promoType | 8);
+            }
+            b.makeMove(move);
+        }
+        bits.flush();
+        return out.toByteArray();
+    }
+
+    // Liest die Partie, die an der aktuellen Position beginnt und bei 'end' aufhört
+    private static PgnGame decode(long number, ByteBuffer in, int end, boolean withMoves) {
+        int flags = in.get() & 0xFF;
+        int tagCount = readVarInt(in);
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (int i = 0; i < tagCount; i++) tags.put(readString(in), readString(in));
+        PgnGame game = new PgnGame(number, tags);
+        game.result = RESULTS[flags & 3];
+        if ((flags & 4) != 0) game.error = readString(in);
+
+        short[] moves = new short[readVarInt(in)];
+        if (!withMoves) {
+            in.position(end);
+            return game;
+        }
+        BitReader bits = new BitReader(in);
+        Board b = moves.length == 0 ? null : game.startBoard(); // Ohne Züge evtl. kein gültiger FEN-Tag
+        for (int ply = 0; ply < moves.length; ply++) {
+            List<Move> legal = b.generateLegalMoves();
+            Move move = legal.get(bits.read(width(legal.size())));
+            if (move.promotion != Piece.EMPTY) {
+                move = move.copy();
+                int promoType = PieceType.QUEEN - bits.read(2);
+                move.promotion = (byte) (b.whiteToMove ? promoType : promoType | 8);
+            }
+            moves[ply] = (short) move.pack();
+            b.makeMove(move);
+        }
+        in.position(end);
+        game.moves = moves;
+        return game;
+    }
+
+    private static int resultIndex(String result) {
+        for (int i = 1; i < RESULTS.length; i++) if (RESULTS[i].equals(result)) return i;
+        return 0;
+    }
+
+    // Bits für einen Index in [0, n): 1 Zug kostet nichts
+    private static int width(int n) {
+        return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    /** Partie als PGN-Text (Tags, Züge in SAN, Ergebnis). */
+    static String toPgn(PgnGame game) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> tag : game.tags.entrySet()) {
+            sb.append('[').append(tag.getKey()).append(" \"").append(tag.getValue()).append("\"]\n");
+        }
+        sb.append('\n');
+        if (game.moves.length == 0) return sb.append(game.result).append("\n\n").toString(); // Evtl. ohne gültigen FEN-Tag
+        Board b = game.startBoard();
+        String[] fen = game.tags.getOrDefault("FEN", "").split(" ");
+        int moveNumber = fen.length >= 6 ? Integer.parseInt(fen[5]) : 1;
+        int lineStart = sb.length();
+        for (int ply = 0; ply < game.moves.length; ply++) {
+            List<Move> legal = b.generateLegalMoves();
+            Move move = b.findLegalMove(game.moves[ply]);
+            if (b.whiteToMove || ply == 0) sb.append(moveNumber).append(b.whiteToMove ? ". " : "... ");
+            if (!b.whiteToMove) moveNumber++;
+            sb.append(San.format(b, move, legal)).append(' ');
+            b.makeMove(move);
+            if (sb.length() - lineStart > 72) {
+                sb.setCharAt(sb.length() - 1, '\n');
+                lineStart = sb.length();
+            }
+        }
+        return sb.append(game.result).append("\n\n").toString();
+    }
+
+    private static final class BitWriter {
+        private final ByteArrayOutputStream out;
+        private long acc;
+        private int count;
+
+        BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void write(int value, int width) {
+            acc |= (long) value << count;
+            count += width;
+            while (count >= 8) {
+                out.write((int) acc);
+                acc >>>= 8;
+                count -= 8;
+            }
+        }
+
+        void flush() {
+            if (count > 0) out.write((int) acc);
+            acc = 0;
+            count = 0;
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private long acc;
+        private int count;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        int read(int width) {
+            while (count < width) {
+                acc |= (long) (in.get() & 0xFF) << count;
+                count += 8;
+            }
+            int value = (int) (acc & ((1L << width) - 1));
+            acc >>>= width;
+            count -= width;
+            return value;
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get() & 0xFF;
+            v |= (b & 0x7F) << shift;
+            if (b < 0x80) return v;
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = readVarInt(in);
+        String s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return s;
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless Spielserver: viele Partien gleichzeitig über ein zeilenbasiertes Protokoll auf localhost.
+ *
+ * Jede Verbindung bekommt einen eigenen Thread (virtuelle Threads ab Java 21, sonst normale).
+ * Suchen laufen dagegen auf einem festen Pool mit so vielen Threads wie Kerne; die Warteschlange
+ * ist FIFO und beschränkt, und jede Sitzung hat höchstens eine Suche offen - dadurch kommen alle
+ * Sitzungen reihum dran. Die Bedenkzeit (budget) zählt ab Start der Suche, nicht ab Einreihen.
+ *
+ * Protokoll (eine Antwort pro Zeile):
+ *   new                      -> ok
+ *   fen FEN                  -> ok | error ...
+ *   move e2e4|Nf3            -> ok | error ...
+ *   go [movetime MS] [depth N] -> bestmove e7e5 score S depth D nodes N time MS | bestmove none
+ *   budget MS                -> ok (Standard-Bedenkzeit dieser Sitzung, gedeckelt durch --max-budget)
+ *   board                    -> fen FEN
+ *   quit
+ *
+ * Sitzungen nutzen den AnalysisStore nur mit --store DATEI; sonst schreibt keine Sitzung etwas
+ * auf die Platte, und die Suchen teilen sich keine Sperre.
+ *
+ * Aufruf: java GameServer [--port 5555] [--threads N] [--shared-tt MB] [--budget MS] [--max-budget MS] [--depth N]
+ *         [--store DATEI]
+ */
+public class GameServer {
+
+    // Eine Bauern-Tabelle pro Such-Thread statt pro Sitzung: tausende ruhende Sitzungen kosten sonst je 192 KB
+    private static final ThreadLocal<PawnHashTable> PAWN_TABLES = ThreadLocal.withInitial(() -> new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES));
+
+    private final int port;
+    private final int maxDepth;
+    private final long defaultBudget;
+    private final long maxBudget;
+    private final TranspositionTable sharedTt;
+    private final boolean persistent;
+    private final ThreadPoolExecutor searchPool;
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    GameServer(int port, int searchThreads, int sharedTtMb, long defaultBudget, long maxBudget, int maxDepth, boolean persistent) {
+        this.port = port;
+        this.persistent = persistent;
+        this.maxDepth = maxDepth;
+        this.defaultBudget = defaultBudget;
+        this.maxBudget = maxBudget;
+        this.sharedTt = sharedTtMb > 0 ? new TranspositionTable(sharedTtMb) : null;
+        this.searchPool = new ThreadPoolExecutor(searchThreads, searchThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16_384), r -> {
+                    Thread t = new Thread(r, "search");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 5555;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int sharedTt = 0;
+        long budget = 1000;
+        long maxBudget = 10_000;
+        int depth = 64;
+        String store = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Wert fehlt für " + args[i]);
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--shared-tt": sharedTt = Integer.parseInt(args[i + 1]); break;
+                case "--budget": budget = Long.parseLong(args[i + 1]); break;
+                case "--max-budget": maxBudget = Long.parseLong(args[i + 1]); break;
+                case "--depth": depth = Integer.parseInt(args[i + 1]); break;
+                case "--store": store = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unbekannte Option: " + args[i]);
+            }
+        }
+        AsyncLog.setLevel(AsyncLog.Level.INFO); // Such-Debugausgaben von tausenden Partien will niemand
+        if (store != null) {
+            System.setProperty("chess.store", store);
+            AnalysisStore.shared(); // Schon beim Start im Hintergrund laden, bis die ersten Clients kommen
+        }
+        new GameServer(port, threads, sharedTt, budget, maxBudget, depth, store != null).run();
+    }
+
+    /** Virtuelle Threads, wenn die JVM sie hat (Java 21+), sonst ein normaler Thread pro Aufgabe. */
+    static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    void run() throws IOException {
+        ExecutorService connections = newPerTaskExecutor();
+        try (ServerSocket server = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress())) {
+            AsyncLog.info("GameServer läuft auf localhost:" + port + " (" + searchPool.getCorePoolSize()
+                    + " Such-Threads" + (sharedTt != null ? ", geteilte TT" : "") + ")");
+            while (true) {
+                Socket socket = server.accept();
+                connections.submit(() -> serve(socket));
+            }
+        } finally {
+            connections.shutdownNow();
+            searchPool.shutdownNow();
+        }
+    }
+
+    private final class Session {
+        Board board = startBoard();
+        final Engine engine = new Engine(sharedTt, persistent);
+        long budget = defaultBudget;
+    }
+
+    private static Board startBoard() {
+        Board b = new Board();
+        b.setupStandardBoard();
+        return b;
+    }
+
+    private void serve(Socket socket) {
+        int active = sessions.incrementAndGet();
+        AsyncLog.debug(() -> "Verbindung offen, aktive Sitzungen: " + active);
+        Session session = new Session();
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            s.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.equals("quit")) break;
+                out.println(handle(session, line));
+            }
+        } catch (IOException e) {
+            AsyncLog.debug(() -> "Verbindung abgebrochen: " + e.getMessage());
+        } finally {
+            session.engine.stop();
+            sessions.decrementAndGet();
+        }
+    }
+
+    private String handle(Session session, String line) {
+        int space = line.indexOf(' ');
+        String cmd = space < 0 ? line : line.substring(0, space);
+        String arg = space < 0 ? "" : line.substring(space + 1).trim();
+        try {
+            switch (cmd) {
+                case "new":
+                    session.board = startBoard();
+                    return "ok";
+                case "fen":
+                    session.board = Fen.parse(arg);
+                    return "ok";
+                case "move":
+                    Move move = arg.matches("[a-h][1-8][a-h][1-8][qrbn]?")
+                            ? San.parseUci(session.board, arg) : San.parse(session.board, arg);
+                    session.board.makeMove(move);
+                    return "ok";
+                case "budget":
+                    session.budget = Math.max(1, Math.min(maxBudget, Long.parseLong(arg)));
+                    return "ok";
+                case "board":
+                    return "fen " + Fen.toFen(session.board);
+                case "go":
+                    return go(session, arg);
+                default:
+                    return "error unbekannter Befehl: " + cmd;
+            }
+        } catch (IllegalArgumentException e) {
+            return "error " + e.getMessage();
+        }
+    }
+
+    private String go(Session session, String arg) {
+        long movetime = session.budget;
+        int depth = maxDepth;
+        String[] parts = arg.isEmpty() ? new String[0] : arg.split("\\s+");
+        for (int i = 0; i + 1 < parts.length; i += 2) {
+            if (parts[i].equals("movetime")) movetime = Math.max(1, Math.min(maxBudget, Long.parseLong(parts[i + 1])));
+            else if (parts[i].equals("depth")) depth = Math.max(1, Math.min(maxDepth, Integer.parseInt(parts[i + 1])));
+        }
+        long limit = movetime;
+        int maxD = depth;
+        Board position = session.board.copy();
+
+        Future<Move> result;
+        try {
+            result = searchPool.submit(() -> {
+                session.engine.setPawnTable(PAWN_TABLES.get());
+                return session.engine.getBestMove(position, maxD, limit);
+            });
+        } catch (RejectedExecutionException e) {
+            return "error busy";
+        }
+        long start = System.nanoTime();
+        Move best;
+        try {
+            best = result.get();
+        } catch (InterruptedException e) {
+            session.engine.stop();
+            Thread.currentThread().interrupt();
+            return "error unterbrochen";
+        } catch (ExecutionException e) {
+            return "error " + e.getCause();
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        if (best == null) return "bestmove none";
+        session.board.makeMove(best);
+        Engine e = session.engine;
+        return "bestmove " + San.uci(best) + " score " + e.getLastScore() + " depth " + e.getCompletedDepth()
+                + " nodes " + e.getNodes() + " time " + ms;
+    }
+}
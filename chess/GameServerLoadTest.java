@@ -0,0 +1,113 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lasttest für den GameServer: N Partien gleichzeitig, der Client zieht zufällig, der Server
+ * antwortet per "go". Gemessen wird die Zeit von "go" bis "bestmove" (inkl. Warteschlange).
+ *
+ * Aufruf: java GameServerLoadTest [--port 5555] [--games N] [--moves M] [--movetime MS] [--seed S]
+ */
+public class GameServerLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int port = 5555;
+        int games = 100;
+        int moves = 20;
+        long movetime = 100;
+        long seed = 1;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Wert fehlt für " + args[i]);
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--games": games = Integer.parseInt(args[i + 1]); break;
+                case "--moves": moves = Integer.parseInt(args[i + 1]); break;
+                case "--movetime": movetime = Long.parseLong(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unbekannte Option: " + args[i]);
+            }
+        }
+
+        List<long[]> perGame = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService pool = GameServer.newPerTaskExecutor();
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            long[] latencies = new long[moves];
+            perGame.add(latencies);
+            int p = port, m = moves;
+            long mt = movetime;
+            SplittableRandom rnd = new SplittableRandom(seed + g);
+            pool.submit(() -> {
+                try {
+                    playGame(p, m, mt, rnd, latencies);
+                } catch (IOException | RuntimeException e) {
+                    failures.incrementAndGet();
+                    System.err.println("Partie fehlgeschlagen: " + e);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] all = perGame.stream().flatMapToLong(Arrays::stream).filter(v -> v > 0).sorted().toArray();
+        System.out.printf("%d Partien, %d Züge in %.1f s (%.1f Züge/s), %d Fehler%n",
+                games, all.length, seconds, all.length / seconds, failures.get());
+        if (all.length == 0) return;
+        System.out.printf("Latenz ms: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9), all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1e6;
+    }
+
+    // Latenzen in Nanosekunden, 0 = Zug nicht gespielt
+    private static void playGame(int port, int moves, long movetime, SplittableRandom rnd, long[] latencies) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+            Board board = new Board();
+            board.setupStandardBoard();
+            expectOk(out, in, "new");
+
+            for (int i = 0; i < moves; i++) {
+                List<Move> legal = board.generateLegalMoves();
+                if (legal.isEmpty()) break;
+                Move mine = legal.get(rnd.nextInt(legal.size()));
+                expectOk(out, in, "move " + San.uci(mine));
+                board.makeMove(mine);
+
+                long t = System.nanoTime();
+                out.println("go movetime " + movetime);
+                String reply = in.readLine();
+                latencies[i] = System.nanoTime() - t;
+                if (reply == null || !reply.startsWith("bestmove")) throw new IOException("Unerwartete Antwort: " + reply);
+                String uci = reply.split(" ")[1];
+                if (uci.equals("none")) break;
+                board.makeMove(San.parseUci(board, uci));
+            }
+            out.println("quit");
+        }
+    }
+
+    private static void expectOk(PrintWriter out, BufferedReader in, String cmd) throws IOException {
+        out.println(cmd);
+        String reply = in.readLine();
+        if (!"ok".equals(reply)) throw new IOException(cmd + " -> " + reply);
+    }
+}
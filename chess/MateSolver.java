@@ -0,0 +1,301 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Mattsuche mit Proof-Number-Search (df-pn, Nagai 2002) für Matt-in-N-Aufgaben.
+ *
+ * Die ziehende Seite (Angreifer) darf nur Schach bietende Züge machen, der Verteidiger alle legalen.
+ * Proof-/Disproof-Zahlen stehen in einer Hash-Tabelle; der Schlüssel enthält die restlichen
+ * Halbzüge, weil "Matt in 3" und "Matt in 5" für dieselbe Stellung verschiedene Fragen sind.
+ * N wird von 1 an erhöht, das erste gefundene Matt ist also das kürzeste (bei Schachgeboten).
+ *
+ * Notation wie im Artikel: phi/delta sind pn/dn aus Sicht der Seite am Zug,
+ * phi = 0 heißt "die Seite am Zug erreicht ihr Ziel" (Angreifer setzt matt, Verteidiger entkommt).
+ *
+ * Aufruf: java MateSolver [--max N] [--threads T] [--nodes N] (FEN | datei mit einer FEN pro Zeile)
+ */
+public class MateSolver {
+
+    private static final int INF = Integer.MAX_VALUE / 2; // Summen dürfen nicht überlaufen
+    private static final long[] PLY_KEYS = new long[256];
+    static {
+        java.util.SplittableRandom rnd = new java.util.SplittableRandom(0x4D41_5445L);
+        for (int i = 0; i < PLY_KEYS.length; i++) PLY_KEYS[i] = rnd.nextLong();
+    }
+
+    /** Ergebnis: Matt in mateIn Zügen mit einer Mattführung gegen die zäheste Verteidigung (2 * mateIn - 1 Halbzüge). */
+    static final class Result {
+        final int mateIn;
+        final List<Move> line;
+        final long nodes;
+
+        Result(int mateIn, List<Move> line, long nodes) {
+            this.mateIn = mateIn;
+            this.line = line;
+            this.nodes = nodes;
+        }
+    }
+
+    private final long[] keys;
+    private final int[] phis;
+    private final int[] deltas;
+    private final int mask;
+    private final long maxNodes;
+    private long nodes;
+    private volatile boolean stopRequested;
+
+    MateSolver(int tableBits, long maxNodes) {
+        keys = new long[1 << tableBits];
+        phis = new int[1 << tableBits];
+        deltas = new int[1 << tableBits];
+        mask = (1 << tableBits) - 1;
+        this.maxNodes = maxNodes;
+    }
+
+    public void stop() { stopRequested = true; }
+
+    /** Sucht ein Matt in höchstens maxMoves Zügen für die Seite am Zug, sonst null. */
+    public Result solve(Board board, int maxMoves) {
+        Board b = board.copy();
+        nodes = 0;
+        stopRequested = false;
+        for (int n = 1; n <= maxMoves && 2 * n - 1 < PLY_KEYS.length; n++) {
+            int plies = 2 * n - 1;
+            mid(b, plies, INF - 1, INF - 1);
+            if (aborted()) return null;
+            if (phi(b.hash, plies) == 0) {
+                return new Result(n, extractLine(b, plies), nodes);
+            }
+        }
+        return null;
+    }
+
+    private boolean aborted() {
+        return stopRequested || nodes >= maxNodes;
+    }
+
+    // ---------------------------
+    // df-pn
+    // ---------------------------
+
+    // Knoten mit 'plies' restlichen Halbzügen; Angreifer am Zug, wenn plies ungerade
+    private void mid(Board board, int plies, int thPhi, int thDelta) {
+        nodes++;
+        long key = board.hash ^ PLY_KEYS[plies];
+        boolean attacker = (plies & 1) == 1;
+
+        List<Move> moves = children(board, attacker);
+        if (moves.isEmpty() || plies == 0) {
+            // Angreifer ohne Schachgebot: gescheitert. Verteidiger entkommt, wenn er nicht matt ist
+            // (auch patt oder am Horizont mit Zügen)
+            boolean sideToMoveWins = !attacker && (!moves.isEmpty() || !board.isCheck(board.whiteToMove));
+            store(key, sideToMoveWins ? 0 : INF, sideToMoveWins ? INF : 0);
+            return;
+        }
+        int count = moves.size();
+        long[] childKeys = new long[count];
+        for (int i = 0; i < count; i++) {
+            Move m = moves.get(i);
+            board.makeMove(m);
+            childKeys[i] = board.hash ^ PLY_KEYS[plies - 1];
+            board.undoMove(m);
+        }
+
+        while (true) {
+            // phi(n) = min delta(Kind), delta(n) = Summe phi(Kind)
+            int minDelta = INF, secondDelta = INF, sumPhi = 0, best = -1, bestPhi = 0;
+            for (int i = 0; i < count; i++) {
+                int idx = (int) childKeys[i] & mask;
+                boolean known = keys[idx] == childKeys[i];
+                int cPhi = known ? phis[idx] : 1;
+                int cDelta = known ? deltas[idx] : 1;
+                sumPhi = Math.min(INF, sumPhi + cPhi);
+                if (cDelta < minDelta) {
+                    secondDelta = minDelta;
+                    minDelta = cDelta;
+                    best = i;
+                    bestPhi = cPhi;
+                } else if (cDelta < secondDelta) {
+                    secondDelta = cDelta;
+                }
+            }
+            store(key, minDelta, sumPhi);
+            if (minDelta >= thPhi || sumPhi >= thDelta || aborted()) return;
+
+            int childThPhi = (int) Math.min(INF - 1, (long) thDelta - sumPhi + bestPhi);
+            int childThDelta = Math.min(thPhi, secondDelta == INF ? INF : secondDelta + 1);
+            Move m = moves.get(best);
+            board.makeMove(m);
+            mid(board, plies - 1, childThPhi, childThDelta);
+            board.undoMove(m);
+        }
+    }
+
+    // Angreifer: nur Schachgebote, Verteidiger: alle legalen Züge
+    private List<Move> children(Board board, boolean attacker) {
+        List<Move> legal = board.generateLegalMoves();
+        if (!attacker) return legal;
+        List<Move> checks = new ArrayList<>();
+        for (Move m : legal) {
+            board.makeMove(m);
+            if (board.isCheck(board.whiteToMove)) checks.add(m);
+            board.undoMove(m);
+        }
+        return checks;
+    }
+
+    private void store(long key, int phi, int delta) {
+        int idx = (int) key & mask;
+        // Bewiesene/widerlegte Einträge nicht durch offene verdrängen
+        if (keys[idx] != key && keys[idx] != 0 && (phis[idx] == 0 || deltas[idx] == 0) && phi != 0 && delta != 0) return;
+        keys[idx] = key;
+        phis[idx] = phi;
+        deltas[idx] = delta;
+    }
+
+    private int phi(long hash, int plies) {
+        long key = hash ^ PLY_KEYS[plies];
+        int idx = (int) key & mask;
+        return keys[idx] == key ? phis[idx] : 1;
+    }
+
+    // Mattführung aus der Tabelle lesen: der Angreifer setzt auf kürzestem Weg matt, der Verteidiger
+    // wählt die zäheste Antwort, so hat die Zeile genau 'plies' Halbzüge. Fehlt ein Eintrag
+    // (verdrängt) oder ist er offen, wird der Knoten neu bewiesen
+    private List<Move> extractLine(Board board, int plies) {
+        List<Move> line = new ArrayList<>();
+        Board b = board.copy();
+        int p = plies; // Kürzestes Matt der Stellung in Halbzügen
+        while (p > 0) {
+            // Angreifer: ein Schachgebot, nach dem der Verteidiger in p - 1 Halbzügen verliert
+            Move attack = null;
+            for (Move m : children(b, true)) {
+                b.makeMove(m);
+                boolean mates = attackerWins(b, p - 1);
+                b.undoMove(m);
+                if (mates) {
+                    attack = m;
+                    break;
+                }
+            }
+            if (attack == null) break;
+            line.add(attack);
+            b.makeMove(attack);
+
+            // Verteidiger: die Antwort mit dem spätesten Matt (keine Antwort = matt)
+            Move defence = null;
+            int longest = -1;
+            for (Move m : b.generateLegalMoves()) {
+                b.makeMove(m);
+                int d = mateDistance(b, p - 2);
+                b.undoMove(m);
+                if (d > longest) {
+                    longest = d;
+                    defence = m;
+                }
+            }
+            if (defence == null || longest < 0) break;
+            line.add(defence);
+            b.makeMove(defence);
+            p = longest;
+        }
+        return line;
+    }
+
+    // Kürzestes Matt (ungerade Halbzüge) für den Angreifer am Zug, höchstens maxPlies, sonst -1
+    private int mateDistance(Board b, int maxPlies) {
+        for (int plies = 1; plies <= maxPlies; plies += 2) {
+            if (attackerWins(b, plies)) return plies;
+        }
+        return -1;
+    }
+
+    // true, wenn der Angreifer mit 'plies' restlichen Halbzügen matt setzt (egal wer am Zug ist)
+    private boolean attackerWins(Board b, int plies) {
+        long key = b.hash ^ PLY_KEYS[plies];
+        int idx = (int) key & mask;
+        if (keys[idx] != key || (phis[idx] != 0 && deltas[idx] != 0)) mid(b, plies, INF - 1, INF - 1);
+        if (keys[idx] != key) return false;
+        return (plies & 1) == 1 ? phis[idx] == 0 : phis[idx] == INF;
+    }
+
+    // ---------------------------
+    // Stapelverarbeitung
+    // ---------------------------
+
+    public static void main(String[] args) throws Exception {
+        int maxMoves = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxNodes = 5_000_000;
+        String input = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--max": maxMoves = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--nodes": maxNodes = Long.parseLong(args[++i]); break;
+                default: input = input == null ? args[i] : input + " " + args[i];
+            }
+        }
+        if (input == null) {
+            System.out.println("Aufruf: java MateSolver [--max N] [--threads T] [--nodes N] (FEN | datei)");
+            return;
+        }
+        List<String> fens = new ArrayList<>();
+        if (Files.isRegularFile(Paths.get(input))) {
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.isBlank() && !line.startsWith("#")) fens.add(line.trim());
+                }
+            }
+        } else {
+            fens.add(input);
+        }
+
+        long start = System.nanoTime();
+        int max = maxMoves;
+        long budget = maxNodes;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<MateSolver> solvers = ThreadLocal.withInitial(() -> new MateSolver(20, budget));
+        List<Future<String>> results = new ArrayList<>();
+        for (String fen : fens) {
+            results.add(pool.submit(() -> describe(fen, solvers.get(), max)));
+        }
+        int solved = 0;
+        for (Future<String> f : results) {
+            String line = f.get();
+            if (line.contains(" mate ")) solved++;
+            System.out.println(line);
+        }
+        pool.shutdown();
+        System.out.printf("%d von %d gelöst in %.2f s%n", solved, fens.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private static String describe(String fen, MateSolver solver, int maxMoves) {
+        Board board;
+        try {
+            board = Fen.parse(fen);
+        } catch (IllegalArgumentException e) {
+            return fen + " ; error " + e.getMessage();
+        }
+        long t = System.nanoTime();
+        Result r = solver.solve(board, maxMoves);
+        long ms = (System.nanoTime() - t) / 1_000_000;
+        if (r == null) return fen + " ; none nodes " + solver.nodes + " time " + ms;
+        StringBuilder sb = new StringBuilder(fen).append(" ; mate ").append(r.mateIn).append(" pv");
+        Board b = board.copy();
+        for (Move m : r.line) {
+            sb.append(' ').append(San.format(b, m, b.generateLegalMoves()));
+            b.makeMove(m);
+        }
+        return sb.append(" nodes ").append(r.nodes).append(" time ").append(ms).toString();
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Optionale NNUE-Bewertung (effizient aktualisierbares neuronales Netz).
+ *
+ * Aufbau: 768 Eingänge (6 Figurenarten x 2 Farben x 64 Felder, je Perspektive gespiegelt)
+ * -> hidden int16-Akkumulator pro Perspektive -> ClippedReLU -> Dense (2*hidden -> l1) -> ClippedReLU
+ * -> Dense (l1 -> 1). Der Akkumulator wird in Board.makeMove/undoMove nur um die geänderten
+ * Merkmale nachgeführt (siehe NnueAccumulator), die Dense-Schichten rechnen die NnueKernels.
+ *
+ * Gewichtsdatei (little-endian): int MAGIC, int VERSION, int hidden, int l1,
+ * short[768*hidden] Eingangsgewichte (merkmalweise), short[hidden] Eingangs-Bias,
+ * short[l1*2*hidden] Gewichte Schicht 1 (zeilenweise, erst eigene Seite), int[l1] Bias,
+ * short[l1] Ausgangsgewichte, int Ausgangs-Bias.
+ *
+ * Aktiv wird das Netz mit -Dchess.nnue=datei.nnue, sonst bleibt es bei Material + PST.
+ */
+final class Nnue {
+
+    static final int MAGIC = 0x4555_4E4E; // "NNUE"
+    static final int VERSION = 1;
+    static final int FEATURES = 768;
+    static final int QA = 255;   // Skala der Aktivierungen
+    static final int QB = 64;    // Skala der Dense-Gewichte
+    static final int SCALE = 400; // Netzausgabe -> Centipawns
+
+    static final NnueKernels KERNELS = NnueKernels.create();
+
+    /** Das per -Dchess.nnue geladene Netz oder null. */
+    static final Nnue ACTIVE = loadActive();
+
+    final int hidden;
+    final int l1;
+    final short[] ftWeights;
+    final short[] ftBias;
+    final int[] l1Weights; // Als int, damit die Dense-Kerne ohne Umwandlung multiplizieren
+    final int[] l1Bias;
+    final int[] outWeights;
+    final int outBias;
+
+    private Nnue(int hidden, int l1, short[] ftWeights, short[] ftBias, int[] l1Weights, int[] l1Bias,
+                 int[] outWeights, int outBias) {
+        this.hidden = hidden;
+        this.l1 = l1;
+        this.ftWeights = ftWeights;
+        this.ftBias = ftBias;
+        this.l1Weights = l1Weights;
+        this.l1Bias = l1Bias;
+        this.outWeights = outWeights;
+        this.outBias = outBias;
+    }
+
+    private static Nnue loadActive() {
+        String file = System.getProperty("chess.nnue");
+        if (file == null) return null;
+        try {
+            Nnue net = load(Paths.get(file));
+            AsyncLog.info("NNUE geladen: " + file + " (" + net.hidden + "x2-" + net.l1 + "-1, Kerne " + KERNELS + ")");
+            return net;
+        } catch (IOException | IllegalArgumentException e) {
+            AsyncLog.error("NNUE nicht ladbar, klassische Bewertung: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static Nnue load(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 16 || buf.getInt() != MAGIC) throw new IllegalArgumentException("Keine NNUE-Datei: " + path);
+        int version = buf.getInt();
+        if (version != VERSION) throw new IllegalArgumentException("Unbekannte NNUE-Version " + version);
+        int hidden = buf.getInt();
+        int l1 = buf.getInt();
+        if (hidden <= 0 || hidden > 4096 || l1 <= 0 || l1 > 1024) {
+            throw new IllegalArgumentException("Unplausible Netzgröße " + hidden + "/" + l1);
+        }
+        long expected = 2L * (FEATURES * hidden + hidden + l1 * 2 * hidden + l1) + 4L * (l1 + 1);
+        if (buf.remaining() != expected) {
+            throw new IllegalArgumentException("Dateigröße passt nicht: " + buf.remaining() + " statt " + expected + " Bytes");
+        }
+        short[] ftWeights = new short[FEATURES * hidden];
+        buf.asShortBuffer().get(ftWeights);
+        buf.position(buf.position() + 2 * ftWeights.length);
+        short[] ftBias = new short[hidden];
+        buf.asShortBuffer().get(ftBias);
+        buf.position(buf.position() + 2 * hidden);
+        int[] l1Weights = new int[l1 * 2 * hidden];
+        for (int i = 0; i < l1Weights.length; i++) l1Weights[i] = buf.getShort();
+        int[] l1Bias = new int[l1];
+        for (int i = 0; i < l1; i++) l1Bias[i] = buf.getInt();
+        int[] outWeights = new int[l1];
+        for (int i = 0; i < l1; i++) outWeights[i] = buf.getShort();
+        int outBias = buf.getInt();
+        return new Nnue(hidden, l1, ftWeights, ftBias, l1Weights, l1Bias, outWeights, outBias);
+    }
+
+    void write(Path path) throws IOException {
+        int size = 16 + 2 * (ftWeights.length + hidden + l1Weights.length + l1) + 4 * (l1 + 1);
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(hidden).putInt(l1);
+        for (short w : ftWeights) buf.putShort(w);
+        for (short b : ftBias) buf.putShort(b);
+        for (int w : l1Weights) buf.putShort((short) w);
+        for (int b : l1Bias) buf.putInt(b);
+        for (int w : outWeights) buf.putShort((short) w);
+        buf.putInt(outBias);
+        Files.write(path, buf.array());
+    }
+
+    /** Zufallsnetz (für Benchmarks und Tests, spielt natürlich nicht gut). */
+    static Nnue random(int hidden, int l1, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        short[] ftWeights = new short[FEATURES * hidden];
+        for (int i = 0; i < ftWeights.length; i++) ftWeights[i] = (short) rnd.nextInt(-40, 41);
+        short[] ftBias = new short[hidden];
+        for (int i = 0; i < hidden; i++) ftBias[i] = (short) rnd.nextInt(0, 64);
+        int[] l1Weights = new int[l1 * 2 * hidden];
+        for (int i = 0; i < l1Weights.length; i++) l1Weights[i] = rnd.nextInt(-64, 65);
+        int[] l1Bias = new int[l1];
+        int[] outWeights = new int[l1];
+        for (int i = 0; i < l1; i++) outWeights[i] = rnd.nextInt(-128, 129);
+        return new Nnue(hidden, l1, ftWeights, ftBias, l1Weights, l1Bias, outWeights, 0);
+    }
+
+    /** Prüfsumme über alle Gewichte (damit gespeicherte Analysen nicht zu einem anderen Netz passen). */
+    long fingerprint() {
+        long h = java.util.Arrays.hashCode(ftWeights);
+        h = h * 31 + java.util.Arrays.hashCode(ftBias);
+        h = h * 31 + java.util.Arrays.hashCode(l1Weights);
+        h = h * 31 + java.util.Arrays.hashCode(l1Bias);
+        h = h * 31 + java.util.Arrays.hashCode(outWeights);
+        return h * 31 + outBias;
+    }
+
+    // Merkmal aus einer Perspektive: eigene Figuren 0-5, gegnerische 6-11; für Schwarz vertikal gespiegelt
+    static int feature(byte piece, int square, boolean whitePerspective) {
+        int type = Piece.getType(piece) - 1;
+        boolean own = Piece.isWhite(piece) == whitePerspective;
+        int sq = whitePerspective ? square : square ^ 56;
+        return ((own ? 0 : 6) + type) * 64 + sq;
+    }
+
+    /** Akkumulator einer Perspektive komplett neu aufbauen. */
+    void refresh(Board board, short[] acc, boolean whitePerspective) {
+        System.arraycopy(ftBias, 0, acc, 0, hidden);
+        for (int sq = 0; sq < 64; sq++) {
+            byte p = board.pieces[sq];
+            if (p != Piece.EMPTY) KERNELS.add(acc, ftWeights, feature(p, sq, whitePerspective) * hidden, hidden);
+        }
+    }
+
+    /** Bewertung aus Sicht der ziehenden Seite. act ist Arbeitsspeicher mit 2*hidden Einträgen. */
+    int forward(short[] stm, short[] nstm, int[] act) {
+        KERNELS.clippedRelu(stm, act, 0, hidden, QA);
+        KERNELS.clippedRelu(nstm, act, hidden, hidden, QA);
+        int width = 2 * hidden;
+        long out = outBias;
+        for (int k = 0; k < l1; k++) {
+            int z = l1Bias[k] + KERNELS.dot(act, l1Weights, k * width, width);
+            int h = Math.max(0, Math.min(QA, z / QB));
+            out += (long) h * outWeights[k];
+        }
+        return (int) (out * SCALE / (QA * QB));
+    }
+
+    /** Ohne angehängten Akkumulator: alles neu rechnen (für einzelne Aufrufe außerhalb der Suche). */
+    int evaluate(Board board) {
+        short[] white = new short[hidden];
+        short[] black = new short[hidden];
+        refresh(board, white, true);
+        refresh(board, black, false);
+        int[] act = new int[2 * hidden];
+        return board.whiteToMove ? forward(white, black, act) : forward(black, white, act);
+    }
+}
+
+/**
+ * Akkumulator-Stapel für ein Board: pro makeMove eine Ebene, pro undoMove eine zurück.
+ * makeMove merkt sich nur die geänderten Merkmale; gerechnet wird erst, wenn evaluate die
+ * Ebene braucht. Die vielen makeMove/undoMove der Legalitätsprüfung kosten so fast nichts.
+ */
+final class NnueAccumulator {
+
+    private final Nnue net;
+    private short[][] white;
+    private short[][] black;
+    private boolean[] computed;
+    private int[][] changes;   // Pro Ebene bis zu 4: (add ? 1 << 16 : 0) | piece << 8 | square
+    private int[] changeCount;
+    private int top;
+    private final int[] act;
+
+    NnueAccumulator(Nnue net, Board board) {
+        this.net = net;
+        this.act = new int[2 * net.hidden];
+        allocate(16); // Wächst bei Bedarf, tiefer geht eine Suche selten
+        net.refresh(board, white[0], true);
+        net.refresh(board, black[0], false);
+        computed[0] = true;
+    }
+
+    private void allocate(int levels) {
+        int old = white == null ? 0 : white.length;
+        white = white == null ? new short[levels][] : java.util.Arrays.copyOf(white, levels);
+        black = black == null ? new short[levels][] : java.util.Arrays.copyOf(black, levels);
+        computed = computed == null ? new boolean[levels] : java.util.Arrays.copyOf(computed, levels);
+        changes = changes == null ? new int[levels][] : java.util.Arrays.copyOf(changes, levels);
+        changeCount = changeCount == null ? new int[levels] : java.util.Arrays.copyOf(changeCount, levels);
+        for (int i = old; i < levels; i++) {
+            white[i] = new short[net.hidden];
+            black[i] = new short[net.hidden];
+            changes[i] = new int[4];
+        }
+    }
+
+    void push() {
+        if (++top == white.length) allocate(white.length * 2);
+        computed[top] = false;
+        changeCount[top] = 0;
+    }
+
+    void pop() {
+        top--;
+    }
+
+    void add(byte piece, int square) {
+        changes[top][changeCount[top]++] = (1 << 16) | (piece << 8) | square;
+    }
+
+    void remove(byte piece, int square) {
+        changes[top][changeCount[top]++] = (piece << 8) | square;
+    }
+
+    /** Bewertung aus Sicht der ziehenden Seite. */
+    int evaluate(boolean whiteToMove) {
+        int level = top;
+        while (!computed[level]) level--;
+        int hidden = net.hidden;
+        NnueKernels k = Nnue.KERNELS;
+        for (int i = level + 1; i <= top; i++) {
+            System.arraycopy(white[i - 1], 0, white[i], 0, hidden);
+            System.arraycopy(black[i - 1], 0, black[i], 0, hidden);
+            for (int c = 0; c < changeCount[i]; c++) {
+                int change = changes[i][c];
+                byte piece = (byte) ((change >>> 8) & 0xFF);
+                int square = change & 0xFF;
+                int wOff = Nnue.feature(piece, square, true) * hidden;
+                int bOff = Nnue.feature(piece, square, false) * hidden;
+                if ((change & (1 << 16)) != 0) {
+                    k.add(white[i], net.ftWeights, wOff, hidden);
+                    k.add(black[i], net.ftWeights, bOff, hidden);
+                } else {
+                    k.sub(white[i], net.ftWeights, wOff, hidden);
+                    k.sub(black[i], net.ftWeights, bOff, hidden);
+                }
+            }
+            computed[i] = true;
+        }
+        return whiteToMove ? net.forward(white[top], black[top], act) : net.forward(black[top], white[top], act);
+    }
+}
@@ -0,0 +1,85 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Bewertungen pro Sekunde: klassische Bewertung gegen NNUE (mit inkrementellem Akkumulator).
+ * Gemessen wird das Muster eines Suchblatts: makeMove, evaluate, undoMove für alle legalen Züge
+ * einer Reihe von Stellungen aus Zufallspartien.
+ *
+ * Aufruf: java [--add-modules jdk.incubator.vector] NnueBench [netz.nnue] [--seconds N]
+ *         java NnueBench --write-random netz.nnue   (Zufallsnetz zum Ausprobieren schreiben)
+ */
+public class NnueBench {
+
+    public static void main(String[] args) throws Exception {
+        AsyncLog.setLevel(AsyncLog.Level.INFO);
+        if (args.length == 2 && args[0].equals("--write-random")) {
+            Nnue.random(256, 32, 1).write(Paths.get(args[1]));
+            System.out.println("Zufallsnetz geschrieben: " + args[1]);
+            return;
+        }
+        Nnue net = null;
+        double seconds = 3;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seconds")) seconds = Double.parseDouble(args[++i]);
+            else net = Nnue.load(Paths.get(args[i]));
+        }
+        if (net == null) net = Nnue.random(256, 32, 1);
+
+        List<Board> positions = randomPositions(200, 7);
+        Engine engine = new Engine();
+        final Nnue n = net;
+        System.out.println("Kerne: " + Nnue.KERNELS + ", Netz " + n.hidden + "x2-" + n.l1 + "-1, "
+                + positions.size() + " Stellungen");
+
+        // Zweimal messen: die erste Runde ist Aufwärmen für den JIT
+        for (int round = 0; round < 2; round++) {
+            double classic = measure(positions, seconds, b -> engine.evaluateClassic(b), false, null);
+            double nnue = measure(positions, seconds, b -> b.nnue.evaluate(b.whiteToMove), true, n);
+            double full = measure(positions, seconds, n::evaluate, false, null);
+            System.out.printf("%s klassisch %,.0f/s   NNUE inkrementell %,.0f/s   NNUE ohne Akkumulator %,.0f/s%n",
+                    round == 0 ? "Aufwärmen:" : "Messung:  ", classic, nnue, full);
+        }
+    }
+
+    private static double measure(List<Board> positions, double seconds, java.util.function.ToIntFunction<Board> eval,
+                                  boolean attach, Nnue net) {
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        long evals = 0;
+        long sink = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (Board b : positions) {
+                if (attach) b.nnue = new NnueAccumulator(net, b);
+                for (Move m : b.generateLegalMoves()) {
+                    b.makeMove(m);
+                    sink += eval.applyAsInt(b);
+                    b.undoMove(m);
+                    evals++;
+                }
+                b.nnue = null;
+            }
+        }
+        if (sink == 42) System.out.print(""); // Ergebnis benutzen, sonst rechnet der JIT ggf. nichts
+        return evals / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static List<Board> randomPositions(int count, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        List<Board> result = new ArrayList<>(count);
+        while (result.size() < count) {
+            Board b = new Board();
+            b.setupStandardBoard();
+            int plies = 8 + rnd.nextInt(40);
+            for (int i = 0; i < plies; i++) {
+                List<Move> moves = b.generateLegalMoves();
+                if (moves.isEmpty()) break;
+                b.makeMove(moves.get(rnd.nextInt(moves.size())));
+            }
+            if (b.hasAnyLegalMove()) result.add(b.copy());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Rechenkerne der NNUE-Bewertung. Die skalare Fassung läuft überall; mit
+ * --add-modules jdk.incubator.vector (und den Klassen aus simd/ im Klassenpfad) wird
+ * stattdessen VectorNnueKernels genommen. -Dchess.nnue.simd=false erzwingt die skalare Fassung.
+ */
+interface NnueKernels {
+
+    /** acc[i] += w[wOffset + i] für i < n (int16, Überlauf wie in der Hardware). */
+    void add(short[] acc, short[] w, int wOffset, int n);
+
+    /** acc[i] -= w[wOffset + i] für i < n. */
+    void sub(short[] acc, short[] w, int wOffset, int n);
+
+    /** out[outOffset + i] = clamp(in[i], 0, max) für i < n. */
+    void clippedRelu(short[] in, int[] out, int outOffset, int n, int max);
+
+    /** Summe a[i] * w[wOffset + i] für i < n. */
+    int dot(int[] a, int[] w, int wOffset, int n);
+
+    static NnueKernels create() {
+        if (!"false".equals(System.getProperty("chess.nnue.simd"))) {
+            try {
+                return (NnueKernels) Class.forName("VectorNnueKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Modul nicht geladen oder Klasse nicht übersetzt -> skalar weiter
+            }
+        }
+        return new ScalarNnueKernels();
+    }
+}
+
+final class ScalarNnueKernels implements NnueKernels {
+
+    @Override
+    public void add(short[] acc, short[] w, int wOffset, int n) {
+        for (int i = 0; i < n; i++) acc[i] += w[wOffset + i];
+    }
+
+    @Override
+    public void sub(short[] acc, short[] w, int wOffset, int n) {
+        for (int i = 0; i < n; i++) acc[i] -= w[wOffset + i];
+    }
+
+    @Override
+    public void clippedRelu(short[] in, int[] out, int outOffset, int n, int max) {
+        for (int i = 0; i < n; i++) out[outOffset + i] = Math.max(0, Math.min(max, in[i]));
+    }
+
+    @Override
+    public int dot(int[] a, int[] w, int wOffset, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) sum += a[i] * w[wOffset + i];
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "skalar";
+    }
+}
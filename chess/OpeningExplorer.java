@@ -0,0 +1,476 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Eröffnungs-Explorer: welche Züge wurden in einer Stellung gespielt, wie oft, mit welchem Ergebnis.
+ *
+ * Aufbau: Partien kommen parallel aus dem PgnReader, jeder Worker spielt sie mit Board.makeMove nach
+ * und sammelt (Hash, Zug, Ergebnis) in einem eigenen Puffer. Volle Puffer werden sortiert, verdichtet
+ * und als Lauf-Datei weggeschrieben; am Ende mischt ein k-Wege-Merge alle Läufe in die Indexdatei.
+ *
+ * Indexdatei: Deflate-komprimierte Blöcke mit nach (Hash, Zug) sortierten Einträgen, dahinter ein
+ * Blockverzeichnis (erster Hash, Offset, Länge) und ein fester Trailer. Ein Hash liegt nie in zwei
+ * Blöcken. Lesen: Verzeichnis in den Heap, Blöcke per Memory-Mapping, kleiner LRU-Cache für entpackte Blöcke.
+ *
+ * Aufruf: java OpeningExplorer build partien.pgn explorer.idx [--plies N]
+ *         java OpeningExplorer query explorer.idx "FEN"
+ */
+public class OpeningExplorer implements AutoCloseable {
+
+    private static final long MAGIC = 0x4348_4558_504C_3031L; // "CHEXPL01"
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 8 + 2 + 4 + 4 + 4;
+    private static final int BLOCK_RECORDS = 4096;
+    private static final int TRAILER_BYTES = 8 + 4 + 4 + 8;
+    private static final long SEGMENT_SIZE = 1L << 30; // Mapping-Segmente, damit auch >2 GB gehen
+    private static final int CACHE_BLOCKS = 256;
+
+    /** Ein Zug aus einer Stellung mit Statistik aus weißer Sicht. */
+    static final class Entry {
+        final int move; // Move.pack()
+        final int whiteWins, draws, blackWins;
+
+        Entry(int move, int whiteWins, int draws, int blackWins) {
+            this.move = move;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+        }
+
+        int total() { return whiteWins + draws + blackWins; }
+    }
+
+    // ---------------------------
+    // Lesen
+    // ---------------------------
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long[] blockFirstHash;
+    private final long[] blockOffset;
+    private final int[] blockLength;
+    private final int[] blockRecords;
+    private final Map<Integer, ByteBuffer> cache = new LinkedHashMap<Integer, ByteBuffer>(CACHE_BLOCKS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+            return size() > CACHE_BLOCKS;
+        }
+    };
+
+    public static OpeningExplorer open(Path file) throws IOException {
+        return new OpeningExplorer(file);
+    }
+
+    private OpeningExplorer(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = channel.size();
+        int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[Math.max(1, segmentCount)];
+        for (int i = 0; i < segmentCount; i++) {
+            long pos = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SEGMENT_SIZE, size - pos));
+        }
+
+        if (size < TRAILER_BYTES) throw new IOException("Keine Explorer-Datei: " + file);
+        ByteBuffer trailer = ByteBuffer.wrap(readBytes(size - TRAILER_BYTES, TRAILER_BYTES));
+        long directoryOffset = trailer.getLong();
+        int blocks = trailer.getInt();
+        int version = trailer.getInt();
+        if (trailer.getLong() != MAGIC || version != VERSION) throw new IOException("Keine Explorer-Datei (oder falsche Version): " + file);
+
+        ByteBuffer dir = ByteBuffer.wrap(readBytes(directoryOffset, blocks * 24));
+        blockFirstHash = new long[blocks];
+        blockOffset = new long[blocks];
+        blockLength = new int[blocks];
+        blockRecords = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockFirstHash[i] = dir.getLong();
+            blockOffset[i] = dir.getLong();
+            blockLength[i] = dir.getInt();
+            blockRecords[i] = dir.getInt();
+        }
+    }
+
+    /** Alle Züge aus dieser Stellung, häufigste zuerst. */
+    public List<Entry> lookup(Board board) throws IOException {
+        long hash = board.hash;
+        // Letzter Block, dessen erster Hash <= hash ist (vorzeichenlos sortiert)
+        int lo = 0, hi = blockFirstHash.length - 1, block = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(blockFirstHash[mid], hash) <= 0) { block = mid; lo = mid + 1; }
+            else hi = mid - 1;
+        }
+        List<Entry> result = new ArrayList<>();
+        if (block < 0) return result;
+
+        ByteBuffer records = block(block);
+        // Binärsuche nach dem ersten Eintrag mit diesem Hash
+        lo = 0; hi = blockRecords[block];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(records.getLong(mid * RECORD_BYTES), hash) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < blockRecords[block]; i++) {
+            int p = i * RECORD_BYTES;
+            if (records.getLong(p) != hash) break;
+            result.add(new Entry(records.getShort(p + 8) & 0xFFFF, records.getInt(p + 10), records.getInt(p + 14), records.getInt(p + 18)));
+        }
+        result.sort((a, b) -> b.total() - a.total());
+        return result;
+    }
+
+    private ByteBuffer block(int index) throws IOException {
+        synchronized (cache) {
+            ByteBuffer cached = cache.get(index);
+            if (cached != null) return cached;
+        }
+        byte[] raw = new byte[blockRecords[index] * RECORD_BYTES];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(readBytes(blockOffset[index], blockLength[index]));
+            if (inflater.inflate(raw) != raw.length) throw new IOException("Block " + index + " ist beschädigt");
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + index + " ist beschädigt", e);
+        } finally {
+            inflater.end();
+        }
+        ByteBuffer records = ByteBuffer.wrap(raw).asReadOnlyBuffer();
+        synchronized (cache) {
+            cache.put(index, records);
+        }
+        return records;
+    }
+
+    // Liest über Segmentgrenzen hinweg
+    private byte[] readBytes(long pos, int len) {
+        byte[] out = new byte[len];
+        int done = 0;
+        while (done < len) {
+            long p = pos + done;
+            MappedByteBuffer seg = segments[(int) (p / SEGMENT_SIZE)];
+            int offset = (int) (p % SEGMENT_SIZE);
+            int n = Math.min(len - done, seg.limit() - offset);
+            seg.get(offset, out, done, n);
+            done += n;
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------------------------
+    // Aufbau
+    // ---------------------------
+
+    /** Baut den Index aus einer PGN-Datei; nur die ersten maxPlies Halbzüge jeder Partie zählen. */
+    public static void build(Path pgn, Path output, int maxPlies) throws IOException, InterruptedException {
+        Path spillDir = Files.createTempDirectory(output.toAbsolutePath().getParent(), "explorer-runs");
+        List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+        List<RunBuffer> buffers = Collections.synchronizedList(new ArrayList<>());
+        int threads = Runtime.getRuntime().availableProcessors();
+        int capacity = RunBuffer.capacity(Runtime.getRuntime().maxMemory(), threads);
+        ThreadLocal<RunBuffer> local = ThreadLocal.withInitial(() -> {
+            RunBuffer b = new RunBuffer(spillDir, runs, capacity);
+            buffers.add(b);
+            return b;
+        });
+
+        try {
+            long games = new PgnReader(threads).read(pgn, game -> {
+                if (game.error != null) return; // Unbrauchbarer FEN-Tag oder illegaler Zug: Partie auslassen
+                int result = game.resultCode();
+                if (result < 0) return; // Ohne Ergebnis keine Statistik
+                RunBuffer buffer = local.get();
+                Board board = game.startBoard();
+                int plies = Math.min(maxPlies, game.moves.length);
+                for (int i = 0; i < plies; i++) {
+                    Move move = board.findLegalMove(game.moves[i]);
+                    buffer.add(board.hash, game.moves[i] & 0x7FFF, result);
+                    board.makeMove(move);
+                }
+            });
+            for (RunBuffer b : buffers) b.spill();
+            AsyncLog.info(games + " Partien gelesen, " + runs.size() + " Läufe, mische...");
+            merge(runs, output);
+        } finally {
+            for (Path run : runs) Files.deleteIfExists(run);
+            Files.deleteIfExists(spillDir);
+        }
+    }
+
+    // Puffer eines Worker-Threads: parallele Arrays (Hash, Zug << 2 | Ergebnis)
+    private static final class RunBuffer {
+        private static final int MIN_CAPACITY = 1 << 16;
+        private static final int MAX_CAPACITY = 1 << 22; // 4M Einträge = 64 MB pro Thread
+        private final long[] hashes;
+        private final long[] payload;
+        private int size = 0;
+        private final Path dir;
+        private final List<Path> runs;
+
+        RunBuffer(Path dir, List<Path> runs, int capacity) {
+            this.dir = dir;
+            this.runs = runs;
+            hashes = new long[capacity];
+            payload = new long[capacity];
+        }
+
+        // Alle Puffer zusammen höchstens ein Viertel des Heaps (16 Bytes pro Eintrag)
+        static int capacity(long maxHeap, int threads) {
+            long perThread = maxHeap / 4 / Math.max(1, threads) / 16;
+            return (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, perThread));
+        }
+
+        void add(long hash, int move, int result) {
+            if (size == hashes.length) spill();
+            hashes[size] = hash;
+            payload[size] = ((long) move << 2) | result;
+            size++;
+        }
+
+        // Sortieren, gleiche (Hash, Zug) zusammenfassen, als Lauf-Datei schreiben
+        void spill() {
+            if (size == 0) return;
+            sort(hashes, payload, 0, size - 1);
+            try {
+                Path run = Files.createTempFile(dir, "run", ".bin");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                    int i = 0;
+                    while (i < size) {
+                        long hash = hashes[i];
+                        long move = payload[i] >>> 2;
+                        int[] counts = new int[3];
+                        while (i < size && hashes[i] == hash && payload[i] >>> 2 == move) {
+                            counts[(int) (payload[i] & 3)]++;
+                            i++;
+                        }
+                        out.writeLong(hash);
+                        out.writeShort((int) move);
+                        out.writeInt(counts[2]);
+                        out.writeInt(counts[1]);
+                        out.writeInt(counts[0]);
+                    }
+                }
+                runs.add(run);
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            size = 0;
+        }
+    }
+
+    // Quicksort über zwei parallele Arrays: erst Hash (vorzeichenlos), dann Payload
+    static void sort(long[] keys, long[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pk = keys[mid], pv = values[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compare(keys[i], values[i], pk, pv) < 0) i++;
+                while (compare(keys[j], values[j], pk, pv) > 0) j--;
+                if (i <= j) {
+                    swap(keys, values, i, j);
+                    i++; j--;
+                }
+            }
+            // Kleinere Hälfte rekursiv, größere in der Schleife -> Stacktiefe log(n)
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(keys[j - 1], values[j - 1], keys[j], values[j]) > 0; j--) {
+                swap(keys, values, j, j - 1);
+            }
+        }
+    }
+
+    private static int compare(long k1, long v1, long k2, long v2) {
+        int c = Long.compareUnsigned(k1, k2);
+        return c != 0 ? c : Long.compare(v1, v2);
+    }
+
+    private static void swap(long[] keys, long[] values, int a, int b) {
+        long k = keys[a]; keys[a] = keys[b]; keys[b] = k;
+        long v = values[a]; values[a] = values[b]; values[b] = v;
+    }
+
+    // Ein Lauf beim Mischen: aktueller Datensatz + Stream
+    private static final class RunReader {
+        final DataInputStream in;
+        long hash;
+        int move, white, draws, black;
+
+        RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                hash = in.readLong();
+                move = in.readShort() & 0xFFFF;
+                white = in.readInt();
+                draws = in.readInt();
+                black = in.readInt();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    private static void merge(List<Path> runs, Path output) throws IOException {
+        PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> {
+            int c = Long.compareUnsigned(a.hash, b.hash);
+            return c != 0 ? c : Integer.compare(a.move, b.move);
+        });
+        for (Path run : runs) {
+            RunReader r = new RunReader(run);
+            if (r.next()) heap.add(r);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+            BlockWriter writer = new BlockWriter(out);
+            while (!heap.isEmpty()) {
+                RunReader r = heap.poll();
+                long hash = r.hash;
+                int move = r.move;
+                long white = 0, draws = 0, black = 0;
+                // Gleicher (Hash, Zug) aus allen Läufen aufsummieren
+                while (true) {
+                    white += r.white; draws += r.draws; black += r.black;
+                    if (r.next()) heap.add(r);
+                    RunReader top = heap.peek();
+                    if (top == null || top.hash != hash || top.move != move) break;
+                    r = heap.poll();
+                }
+                writer.add(hash, move, (int) Math.min(white, Integer.MAX_VALUE),
+                        (int) Math.min(draws, Integer.MAX_VALUE), (int) Math.min(black, Integer.MAX_VALUE));
+            }
+            writer.finish();
+        }
+    }
+
+    private static final class BlockWriter {
+        private final OutputStream out;
+        private final ByteBuffer block = ByteBuffer.allocate(BLOCK_RECORDS * 2 * RECORD_BYTES).order(ByteOrder.BIG_ENDIAN);
+        private ByteBuffer dir = ByteBuffer.allocate(1 << 16); // Blockverzeichnis, wächst bei Bedarf
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] compressed = new byte[BLOCK_RECORDS * 2 * RECORD_BYTES + 1024];
+        private long offset = 0;
+        private int blocks = 0;
+        private long firstHash;
+        private long lastHash;
+        private int records = 0;
+
+        BlockWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void add(long hash, int move, int white, int draws, int black) throws IOException {
+            // Block nur zwischen zwei Hashes schließen, damit eine Stellung nie geteilt wird
+            if (records >= BLOCK_RECORDS && hash != lastHash) flush();
+            if (block.remaining() < RECORD_BYTES) flush(); // Notfall: extrem viele Züge in einer Stellung
+            if (records == 0) firstHash = hash;
+            block.putLong(hash).putShort((short) move).putInt(white).putInt(draws).putInt(black);
+            lastHash = hash;
+            records++;
+        }
+
+        private void flush() throws IOException {
+            if (records == 0) return;
+            deflater.reset();
+            deflater.setInput(block.array(), 0, block.position());
+            deflater.finish();
+            int len = 0;
+            while (!deflater.finished()) {
+                len += deflater.deflate(compressed, len, compressed.length - len);
+            }
+            out.write(compressed, 0, len);
+
+            if (dir.remaining() < 24) {
+                ByteBuffer bigger = ByteBuffer.allocate(dir.capacity() * 2);
+                dir.flip();
+                bigger.put(dir);
+                dir = bigger;
+            }
+            dir.putLong(firstHash).putLong(offset).putInt(len).putInt(records);
+            offset += len;
+            blocks++;
+            block.clear();
+            records = 0;
+        }
+
+        void finish() throws IOException {
+            flush();
+            deflater.end();
+            out.write(dir.array(), 0, dir.position());
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            trailer.putLong(offset).putInt(blocks).putInt(VERSION).putLong(MAGIC);
+            out.write(trailer.array());
+        }
+    }
+
+    // ---------------------------
+    // Kommandozeile
+    // ---------------------------
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("build")) {
+            int plies = 40;
+            if (args.length >= 5 && args[3].equals("--plies")) plies = Integer.parseInt(args[4]);
+            long start = System.currentTimeMillis();
+            build(Paths.get(args[1]), Paths.get(args[2]), plies);
+            System.out.println("Index gebaut in " + (System.currentTimeMillis() - start) + " ms: " + args[2]);
+        } else if (args.length >= 2 && args[0].equals("query")) {
+            Board board = args.length >= 3 ? Fen.parse(args[2]) : Fen.parse(Fen.START);
+            try (OpeningExplorer explorer = open(Paths.get(args[1]))) {
+                long start = System.nanoTime();
+                List<Entry> entries = explorer.lookup(board);
+                long micros = (System.nanoTime() - start) / 1000;
+                List<Move> legal = board.generateLegalMoves();
+                for (Entry e : entries) {
+                    Move m = board.findLegalMove(e.move);
+                    String san = m != null ? San.format(board, m, legal) : "?";
+                    System.out.printf("%-8s %8d  +%d =%d -%d%n", san, e.total(), e.whiteWins, e.draws, e.blackWins);
+                }
+                System.out.println(entries.size() + " Züge, Abfrage " + micros + " µs");
+            }
+        } else {
+            System.out.println("Aufruf: java OpeningExplorer build partien.pgn explorer.idx [--plies N]");
+            System.out.println("        java OpeningExplorer query explorer.idx [\"FEN\"]");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Bauernstruktur: Doppel-, Isolani-, rückständige und Freibauern.
+ * Das Ergebnis hängt nur von den Bauern ab und wird deshalb über Board.pawnHash gecacht.
+ * Feld 0 ist a8 - weiße Bauern laufen also zu kleineren Reihen.
+ */
+final class PawnStructure {
+
+    static final int DOUBLED = -15;   // Pro zusätzlichem Bauern auf derselben Linie
+    static final int ISOLATED = -15;
+    static final int BACKWARD = -10;
+    // Freibauer-Bonus nach Reihe aus Sicht des Bauern (1 = Grundreihe + 1 ... 6 = kurz vor Umwandlung)
+    static final int[] PASSED = { 0, 5, 10, 20, 35, 60, 100, 0 };
+
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+
+    static {
+        for (int c = 0; c < 8; c++) FILES[c] = FILE_A << c;
+        for (int c = 0; c < 8; c++) {
+            ADJACENT_FILES[c] = (c > 0 ? FILES[c - 1] : 0) | (c < 7 ? FILES[c + 1] : 0);
+        }
+    }
+
+    private PawnStructure() {}
+
+    /** Bauernstruktur-Score aus weißer Sicht. */
+    static int evaluate(Board board) {
+        long white = 0, black = 0;
+        for (int i = 0; i < 64; i++) {
+            if (board.pieces[i] == Piece.W_PAWN) white |= 1L << i;
+            else if (board.pieces[i] == Piece.B_PAWN) black |= 1L << i;
+        }
+        return evaluateSide(white, black, true) - evaluateSide(black, white, false);
+    }
+
+    private static int evaluateSide(long own, long enemy, boolean isWhite) {
+        int score = 0;
+        for (int c = 0; c < 8; c++) {
+            int count = Long.bitCount(own & FILES[c]);
+            if (count > 1) score += DOUBLED * (count - 1);
+        }
+
+        long pawns = own;
+        while (pawns != 0) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            int row = sq / 8, col = sq % 8;
+            // Reihen vor dem Bauern (in Zugrichtung) und Reihen neben/hinter ihm
+            long ahead = isWhite ? (1L << (row * 8)) - 1 : row == 7 ? 0 : -1L << ((row + 1) * 8);
+            long behindOrLevel = ~ahead;
+
+            if ((enemy & ahead & (FILES[col] | ADJACENT_FILES[col])) == 0) {
+                score += PASSED[isWhite ? 7 - row : row];
+            }
+            if ((own & ADJACENT_FILES[col]) == 0) {
+                score += ISOLATED;
+            } else if ((own & ADJACENT_FILES[col] & behindOrLevel) == 0) {
+                // Kein Nachbar kann ihn decken, und das Feld vor ihm wird von einem gegnerischen Bauern kontrolliert
+                int stopRow = isWhite ? row - 1 : row + 1;
+                int attackerRow = isWhite ? row - 2 : row + 2;
+                if (stopRow >= 0 && stopRow <= 7 && attackerRow >= 0 && attackerRow <= 7
+                        && (enemy & ADJACENT_FILES[col] & (0xFFL << (attackerRow * 8))) != 0) {
+                    score += BACKWARD;
+                }
+            }
+        }
+        return score;
+    }
+}
+
+/**
+ * Direkt adressierte Tabelle Bauern-Hash -> Bauernstruktur-Score, mit Trefferzählern.
+ * Nicht thread-sicher; jede Engine hat ihre eigene, der GameServer eine pro Such-Thread.
+ */
+final class PawnHashTable {
+    static final int DEFAULT_ENTRIES = 1 << 14;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    PawnHashTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(16, entries));
+        keys = new long[size];
+        scores = new int[size];
+        mask = size - 1;
+    }
+
+    int score(Board board) {
+        long key = board.pawnHash;
+        int idx = (int) key & mask;
+        // Leere Slots (0, 0) passen nur zu "keine Bauern" - und dafür ist 0 auch richtig
+        if (keys[idx] == key) {
+            hits++;
+            return scores[idx];
+        }
+        misses++;
+        int score = PawnStructure.evaluate(board);
+        keys[idx] = key;
+        scores[idx] = score;
+        return score;
+    }
+
+    long getHits() { return hits; }
+    long getMisses() { return misses; }
+
+    String describe() {
+        long total = hits + misses;
+        return String.format("%d Abfragen, Trefferquote %.1f%%", total, total == 0 ? 0.0 : 100.0 * hits / total);
+    }
+}
@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Perft: zählt alle Zugfolgen bis zur gegebenen Tiefe. Dient zur Prüfung des Zuggenerators und als
+ * Durchsatzmessung für makeMove/undoMove/generateLegalMoves.
+ *
+ * - Hash-Tabelle (Stellungs-Hash, Resttiefe) -> Anzahl, gemeinsam für alle Threads und lockfrei:
+ *   der Schlüssel wird mit der Anzahl verxodert gespeichert, ein halb geschriebener Eintrag passt
+ *   dann einfach nicht (wie in der TranspositionTable).
+ * - Letzte Ebene ohne makeMove: Board.countLegalMoves zählt nur.
+ * - Die oberen SPLIT_PLIES Ebenen werden als Aufgaben in einen ForkJoinPool verteilt.
+ * - Fortschritt jede Sekunde, am Ende Züge/s pro Thread.
+ *
+ * Der Generator erzeugt nur Damen-Umwandlungen; Perft spielt die anderen drei Figuren selbst
+ * durch, damit die Zahlen mit den üblichen Referenzwerten übereinstimmen.
+ *
+ * Aufruf: java Perft [TIEFE] [--fen FEN] [--threads T] [--hash MB] [--divide]
+ *         (--hash 0 schaltet die Tabelle ab, für reine Generator-Messungen)
+ */
+public class Perft {
+
+    private static final int SPLIT_PLIES = 2;  // Ebenen, deren Züge eigene Aufgaben werden
+    private static final int SPLIT_MIN_DEPTH = 4; // Kleinere Teilbäume lohnen keine Aufgabe
+    private static final byte[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT };
+
+    private final Table table;
+    private final ForkJoinPool pool;
+    private final Queue<ThreadStats> allStats = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadStats> stats = ThreadLocal.withInitial(() -> {
+        ThreadStats s = new ThreadStats(Thread.currentThread().getName());
+        allStats.add(s);
+        return s;
+    });
+    private final AtomicInteger tasksTotal = new AtomicInteger();
+    private final AtomicInteger tasksDone = new AtomicInteger();
+
+    public Perft(int threads, int hashMb) {
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.table = hashMb > 0 ? new Table(hashMb) : null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int depth = 6;
+        String fen = Fen.START;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMb = 256;
+        boolean divide = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fen": fen = args[++i]; break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "--divide": divide = true; break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        System.out.println("Aufruf: java Perft [TIEFE] [--fen FEN] [--threads T] [--hash MB] [--divide]");
+                        return;
+                    }
+                    depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        Perft perft = new Perft(threads, hashMb);
+        Board board = Fen.parse(fen);
+        System.out.printf("perft(%d) %s, %d Threads, Hash %s%n", depth, fen, threads, hashMb > 0 ? hashMb + " MB" : "aus");
+        long start = System.nanoTime();
+        Thread progress = perft.startProgress(start);
+        List<String> divideLines = new ArrayList<>();
+        long nodes;
+        try {
+            nodes = divide ? perft.divide(board, depth, divideLines) : perft.count(board, depth);
+        } finally {
+            progress.interrupt();
+            perft.pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        divideLines.forEach(System.out::println);
+        System.out.printf("perft(%d) = %d in %.2f s (%,.0f Stellungen/s)%n", depth, nodes, seconds, nodes / seconds);
+        perft.printThreadStats(seconds);
+    }
+
+    /** Anzahl der Blattstellungen in 'depth' Halbzügen. board wird nicht verändert. */
+    public long count(Board board, int depth) {
+        tasksTotal.incrementAndGet();
+        return pool.invoke(new Task(board.copy(), depth, 0));
+    }
+
+    /** Wie count, dazu je Wurzelzug eine Zeile "e2e4: 1234" in 'lines'. */
+    public long divide(Board board, int depth, List<String> lines) {
+        if (depth < 1) return 1;
+        List<Move> moves = expand(board.generateLegalMoves());
+        List<Task> tasks = new ArrayList<>(moves.size());
+        for (Move m : moves) {
+            Board child = board.copy();
+            child.makeMove(m);
+            tasks.add(new Task(child, depth - 1, 1));
+        }
+        tasksTotal.addAndGet(tasks.size());
+        long total = 0;
+        for (Task t : tasks) pool.execute(t);
+        for (Task t : tasks) total += t.join();
+        for (int i = 0; i < moves.size(); i++) {
+            lines.add(San.uci(moves.get(i)) + ": " + tasks.get(i).join());
+        }
+        lines.sort(null);
+        return total;
+    }
+
+    private final class Task extends RecursiveTask<Long> {
+        private final Board board;
+        private final int depth;
+        private final int ply;
+
+        Task(Board board, int depth, int ply) {
+            this.board = board;
+            this.depth = depth;
+            this.ply = ply;
+        }
+
+        @Override
+        protected Long compute() {
+            try {
+                if (ply >= SPLIT_PLIES || depth < SPLIT_MIN_DEPTH) return perft(board, depth, stats.get());
+                long cached = table != null ? table.probe(board.hash, depth) : -1;
+                if (cached >= 0) return cached;
+                List<Move> moves = expand(board.generateLegalMoves());
+                List<Task> children = new ArrayList<>(moves.size());
+                for (Move m : moves) {
+                    Board child = board.copy();
+                    child.makeMove(m);
+                    children.add(new Task(child, depth - 1, ply + 1));
+                }
+                tasksTotal.addAndGet(children.size());
+                long n = 0;
+                for (Task t : invokeAll(children)) n += t.join();
+                if (table != null) table.store(board.hash, depth, n);
+                return n;
+            } finally {
+                tasksDone.incrementAndGet();
+            }
+        }
+    }
+
+    private long perft(Board board, int depth, ThreadStats st) {
+        if (depth == 0) return 1;
+        if (table != null) {
+            long cached = table.probe(board.hash, depth);
+            if (cached >= 0) {
+                st.hashHits++;
+                return cached;
+            }
+        }
+        long n;
+        if (depth == 1) {
+            n = board.countLegalMoves();
+            st.leafCounts++;
+        } else {
+            n = 0;
+            for (Move m : board.generateLegalMoves()) {
+                if (m.promotion == Piece.EMPTY) {
+                    board.makeMove(m);
+                    n += perft(board, depth - 1, st);
+                    board.undoMove(m);
+                    st.moves++;
+                    continue;
+                }
+                for (byte type : PROMOTIONS) {
+                    m.promotion = (byte) (board.whiteToMove ? type : type | 8);
+                    board.makeMove(m);
+                    n += perft(board, depth - 1, st);
+                    board.undoMove(m);
+                    st.moves++;
+                }
+            }
+        }
+        if (table != null) table.store(board.hash, depth, n);
+        return n;
+    }
+
+    // Damen-Umwandlungen des Generators um Turm, Läufer und Springer ergänzen
+    private static List<Move> expand(List<Move> moves) {
+        List<Move> all = new ArrayList<>(moves.size() + 8);
+        for (Move m : moves) {
+            all.add(m);
+            if (m.promotion == Piece.EMPTY) continue;
+            for (int i = 1; i < PROMOTIONS.length; i++) {
+                Move u = m.copy();
+                u.promotion = (byte) (Piece.isWhite(m.promotion) ? PROMOTIONS[i] : PROMOTIONS[i] | 8);
+                all.add(u);
+            }
+        }
+        return all;
+    }
+
+    // ---------------------------
+    // Fortschritt und Statistik
+    // ---------------------------
+
+    private Thread startProgress(long start) {
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(1000);
+                    double s = (System.nanoTime() - start) / 1e9;
+                    long moves = 0, hits = 0;
+                    for (ThreadStats st : allStats) {
+                        moves += st.moves;
+                        hits += st.hashHits;
+                    }
+                    System.out.printf("[%5.0f s] %d/%d Aufgaben, %,d Züge (%,.0f/s), %,d Hash-Treffer%n", s,
+                            tasksDone.get(), tasksTotal.get(), moves, moves / s, hits);
+                }
+            } catch (InterruptedException e) {
+                // Fertig
+            }
+        }, "perft-progress");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void printThreadStats(double seconds) {
+        long total = 0;
+        for (ThreadStats st : allStats) total += st.moves;
+        System.out.printf("%-32s %16s %12s %14s %14s%n", "Thread", "Züge", "Züge/s", "Blattzählungen", "Hash-Treffer");
+        for (ThreadStats st : allStats) {
+            System.out.printf("%-32s %,16d %,12.0f %,14d %,14d  (%.0f%%)%n", st.name, st.moves, st.moves / seconds,
+                    st.leafCounts, st.hashHits, total == 0 ? 0.0 : 100.0 * st.moves / total);
+        }
+        if (table != null) System.out.println("Hash: " + table.describe());
+    }
+
+    // Pro Worker-Thread, nur von ihm geschrieben; die Fortschrittsanzeige liest ohne Synchronisation
+    private static final class ThreadStats {
+        final String name;
+        long moves;
+        long leafCounts;
+        long hashHits;
+
+        ThreadStats(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Zwei Einträge pro Bucket: der erste behält den größeren Teilbaum, der zweite wird immer
+     * ersetzt. keys[i] = Hash ^ Tiefe ^ Anzahl, counts[i] = Anzahl.
+     */
+    private static final class Table {
+        private static final long[] DEPTH_KEYS = new long[64];
+
+        static {
+            long z = 0x2545_F491_4F6C_DD1DL;
+            for (int i = 0; i < DEPTH_KEYS.length; i++) {
+                z += 0x9E37_79B9_7F4A_7C15L;
+                long x = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+                DEPTH_KEYS[i] = x ^ (x >>> 31);
+            }
+        }
+
+        private final long[] keys;
+        private final long[] counts;
+        private final int bucketMask;
+
+        Table(int megabytes) {
+            long entries = Math.max(1024, (long) megabytes * 1024 * 1024 / 16);
+            int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+            keys = new long[size];
+            counts = new long[size];
+            bucketMask = (size >>> 1) - 1;
+        }
+
+        long probe(long hash, int depth) {
+            long key = hash ^ DEPTH_KEYS[depth];
+            int i = ((int) (key >>> 32) & bucketMask) << 1;
+            for (int j = i; j < i + 2; j++) {
+                long c = counts[j];
+                if ((keys[j] ^ c) == key) return c;
+            }
+            return -1;
+        }
+
+        void store(long hash, int depth, long count) {
+            long key = hash ^ DEPTH_KEYS[depth];
+            int i = ((int) (key >>> 32) & bucketMask) << 1;
+            // Tiefe steckt nicht im Eintrag; die Anzahl ist ein gutes Maß für die Arbeit dahinter
+            int j = counts[i] <= count ? i : i + 1;
+            counts[j] = count;
+            keys[j] = key ^ count;
+        }
+
+        String describe() {
+            long used = 0;
+            for (long c : counts) if (c != 0) used++;
+            return String.format("%,d Einträge, %.0f%% belegt", counts.length, 100.0 * used / counts.length);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Liest große PGN-Datenbanken.
+ *
+ * Der aufrufende Thread mappt die Datei fensterweise (FileChannel.map) und schneidet sie an
+ * Partiegrenzen in Rohbytes. Pakete davon gehen über eine beschränkte Queue an Worker, die
+ * parallel parsen und jeden SAN-Zug gegen Board.generateLegalMoves auflösen. Der Speicherbedarf
+ * hängt nur von Fenstergröße und Queue-Länge ab, nicht von der Dateigröße.
+ *
+ * Aufruf: java PgnReader datei.pgn [--fen]
+ */
+public class PgnReader {
+
+    private static final long WINDOW_SIZE = 64L << 20; // 64 MB pro Mapping
+    private static final int GAMES_PER_BATCH = 256;
+
+    private final int threads;
+
+    public PgnReader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PgnReader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Aufruf: java PgnReader datei.pgn [--fen]");
+            return;
+        }
+        boolean printFen = args.length > 1 && args[1].equals("--fen");
+        AtomicLong plies = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long games = new PgnReader().read(Paths.get(args[0]), game -> {
+            plies.addAndGet(game.moves.length);
+            if (game.error != null) errors.incrementAndGet();
+            if (printFen && game.startBoardOrNull() != null) {
+                String line = game.number + ": " + Fen.toFen(game.replay(game.moves.length));
+                synchronized (System.out) { System.out.println(line); }
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d Partien, %d Halbzüge, %d fehlerhaft in %.1f s (%.0f Partien/min)%n",
+                games, plies.get(), errors.get(), seconds, games / seconds * 60);
+    }
+
+    /**
+     * Liest alle Partien und ruft consumer für jede auf - aus mehreren Worker-Threads
+     * gleichzeitig und nicht in Dateireihenfolge (dafür gibt es PgnGame.number).
+     * @return Anzahl der Partien
+     */
+    public long read(Path file, Consumer<PgnGame> consumer) throws IOException, InterruptedException {
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(threads * 4);
+        Batch poison = new Batch(-1);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    while (true) {
+                        Batch batch = queue.take();
+                        if (batch == poison) return;
+                        if (failure.get() != null) continue; // Nur noch leeren, damit der Leser nicht hängt
+                        try {
+                            for (int g = 0; g < batch.games.size(); g++) {
+                                consumer.accept(parseGame(batch.firstNumber + g, batch.games.get(g)));
+                            }
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "pgn-worker-" + i);
+            workers[i].start();
+        }
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Splitter splitter = new Splitter(queue);
+            long size = channel.size();
+            for (long pos = 0; pos < size && failure.get() == null; pos += WINDOW_SIZE) {
+                long len = Math.min(WINDOW_SIZE, size - pos);
+                splitter.scan(channel.map(FileChannel.MapMode.READ_ONLY, pos, len));
+            }
+            count = splitter.finish();
+        } finally {
+            for (int i = 0; i < threads; i++) queue.put(poison);
+            for (Thread w : workers) w.join();
+        }
+        if (failure.get() != null) throw failure.get();
+        return count;
+    }
+
+    private static final class Batch {
+        final long firstNumber;
+        final List<byte[]> games = new ArrayList<>(GAMES_PER_BATCH);
+
+        Batch(long firstNumber) {
+            this.firstNumber = firstNumber;
+        }
+    }
+
+    // Schneidet den Bytestrom an Partiegrenzen: eine Zeile mit '[' nach Zugtext beginnt die nächste Partie
+    private static final class Splitter {
+        private final BlockingQueue<Batch> queue;
+        private Batch batch = new Batch(0);
+        private byte[] carry = new byte[0]; // Anfang einer Partie aus dem vorigen Fenster
+        private int carryLen = 0;
+        private boolean atLineStart = true;
+        private boolean seenMovetext = false;
+        private long games = 0;
+
+        Splitter(BlockingQueue<Batch> queue) {
+            this.queue = queue;
+        }
+
+        void scan(MappedByteBuffer buf) throws InterruptedException {
+            int limit = buf.limit();
+            int gameStart = 0;
+            for (int i = 0; i < limit; i++) {
+                byte c = buf.get(i);
+                if (c == '\n') {
+                    atLineStart = true;
+                    continue;
+                }
+                if (!atLineStart) continue;
+                if (c == '\r' || c == ' ' || c == '\t') continue;
+                atLineStart = false;
+                if (c == '[') {
+                    if (seenMovetext) {
+                        emit(buf, gameStart, i);
+                        gameStart = i;
+                        seenMovetext = false;
+                    }
+                } else if (c != '%') {
+                    seenMovetext = true;
+                }
+            }
+            appendCarry(buf, gameStart, limit);
+        }
+
+        long finish() throws InterruptedException {
+            if (carryLen > 0) {
+                batch.games.add(Arrays.copyOf(carry, carryLen));
+                games++;
+            }
+            if (!batch.games.isEmpty()) queue.put(batch);
+            return games;
+        }
+
+        private void emit(MappedByteBuffer buf, int from, int to) throws InterruptedException {
+            byte[] game = new byte[carryLen + (to - from)];
+            System.arraycopy(carry, 0, game, 0, carryLen);
+            buf.get(from, game, carryLen, to - from);
+            carryLen = 0;
+            batch.games.add(game);
+            games++;
+            if (batch.games.size() == GAMES_PER_BATCH) {
+                queue.put(batch); // Blockiert, wenn die Worker hinterherhängen
+                batch = new Batch(games);
+            }
+        }
+
+        private void appendCarry(MappedByteBuffer buf, int from, int to) {
+            int len = to - from;
+            if (carryLen + len > carry.length) carry = Arrays.copyOf(carry, Math.max(carryLen + len, carry.length * 2));
+            buf.get(from, carry, carryLen, len);
+            carryLen += len;
+        }
+    }
+
+    // ---------------------------
+    // Parsen einer einzelnen Partie
+    // ---------------------------
+
+    static PgnGame parseGame(long number, byte[] raw) {
+        String text = new String(raw, StandardCharsets.UTF_8);
+        Map<String, String> tags = new LinkedHashMap<>();
+        int pos = 0;
+        int len = text.length();
+
+        // Tag-Abschnitt: [Name "Wert"]
+        while (pos < len) {
+            char c = text.charAt(pos);
+            if (Character.isWhitespace(c)) { pos++; continue; }
+            if (c != '[') break;
+            int close = text.indexOf(']', pos);
+            if (close < 0) break;
+            int q1 = text.indexOf('"', pos);
+            int q2 = q1 < 0 ? -1 : text.lastIndexOf('"', close);
+            if (q1 > 0 && q2 > q1 && q2 < close) {
+                tags.put(text.substring(pos + 1, q1).trim(), text.substring(q1 + 1, q2));
+            }
+            pos = close + 1;
+        }
+
+        PgnGame game = new PgnGame(number, tags);
+        Board board;
+        try {
+            board = game.startBoard();
+        } catch (IllegalArgumentException e) {
+            game.error = "FEN-Tag ungültig: " + e.getMessage();
+            game.result = tags.getOrDefault("Result", "*");
+            game.moves = new short[0];
+            return game;
+        }
+
+        short[] moves = new short[128];
+        int plies = 0;
+        int depth = 0; // Verschachtelungstiefe von Varianten (...)
+        while (pos < len) {
+            char c = text.charAt(pos);
+            if (Character.isWhitespace(c)) { pos++; continue; }
+            if (c == '{') { // Kommentar
+                int close = text.indexOf('}', pos);
+                pos = close < 0 ? len : close + 1;
+                continue;
+            }
+            if (c == ';' || c == '%') { // Kommentar bis Zeilenende
+                int nl = text.indexOf('\n', pos);
+                pos = nl < 0 ? len : nl + 1;
+                continue;
+            }
+            if (c == '(') { depth++; pos++; continue; }
+            if (c == ')') { depth--; pos++; continue; }
+
+            int tokenEnd = pos;
+            while (tokenEnd < len && !Character.isWhitespace(text.charAt(tokenEnd))
+                    && "{}();".indexOf(text.charAt(tokenEnd)) < 0) tokenEnd++;
+            String token = text.substring(pos, tokenEnd);
+            pos = tokenEnd;
+            if (depth > 0 || token.charAt(0) == '$') continue; // Varianten und NAGs ignorieren
+
+            if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                game.result = token;
+                break;
+            }
+            // Zugnummern wie "12." oder "12..." (auch an den Zug geklebt: "12.e4")
+            int dot = token.lastIndexOf('.');
+            if (dot >= 0) token = token.substring(dot + 1);
+            if (token.isEmpty() || Character.isDigit(token.charAt(0))) continue;
+
+            Move move;
+            try {
+                move = San.parse(board, token);
+            } catch (IllegalArgumentException e) {
+                game.error = "Halbzug " + (plies + 1) + ": " + e.getMessage();
+                break;
+            }
+            if (plies == moves.length) moves = Arrays.copyOf(moves, plies * 2);
+            moves[plies++] = (short) move.pack();
+            board.makeMove(move);
+        }
+        if (game.result == null) game.result = tags.getOrDefault("Result", "*");
+        game.moves = Arrays.copyOf(moves, plies);
+        return game;
+    }
+}
+
+/**
+ * Eine gelesene Partie. Züge sind gepackt (Move.pack), bei einem Fehler enthält moves
+ * alle Züge bis dahin und error den Grund.
+ */
+class PgnGame {
+    final long number;
+    final Map<String, String> tags;
+    String result;
+    short[] moves;
+    String error;
+
+    PgnGame(long number, Map<String, String> tags) {
+        this.number = number;
+        this.tags = tags;
+    }
+
+    /** Stellung laut FEN-Tag (sonst Grundstellung); IllegalArgumentException bei unbrauchbarem FEN. */
+    Board startBoard() {
+        String fen = tags.get("FEN");
+        if (fen != null) return Fen.parse(fen);
+        Board b = new Board();
+        b.setupStandardBoard();
+        return b;
+    }
+
+    /** Wie startBoard(), aber null statt Ausnahme, wenn es keine Startstellung gibt. */
+    Board startBoardOrNull() {
+        try {
+            return startBoard();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Stellung nach den ersten 'plies' Halbzügen
+    Board replay(int plies) {
+        Board b = startBoard();
+        for (int i = 0; i < plies; i++) {
+            b.makeMove(b.findLegalMove(moves[i]));
+        }
+        return b;
+    }
+
+    // Ergebnis aus weißer Sicht: 2 = Sieg, 1 = Remis, 0 = Niederlage, -1 = unbekannt
+    int resultCode() {
+        switch (result) {
+            case "1-0": return 2;
+            case "1/2-1/2": return 1;
+            case "0-1": return 0;
+            default: return -1;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.List;
+
+/**
+ * Standard Algebraic Notation (z.B. "Nbd7", "exd5", "e8=Q+", "O-O") lesen und schreiben.
+ * Figurenbuchstaben sind die englischen (K, Q, R, B, N), wie in PGN üblich.
+ * Dazu die UCI-Koordinatenschreibweise ("e2e4", "e7e8q") für Protokolle.
+ */
+final class San {
+
+    private San() {}
+
+    /** Findet den legalen Zug zu einem SAN-Text oder wirft IllegalArgumentException. */
+    public static Move parse(Board board, String san) {
+        return parse(board, san, board.generateLegalMoves());
+    }
+
+    public static Move parse(Board board, String san, List<Move> legalMoves) {
+        String s = san;
+        // Schach/Matt-Zeichen und Kommentare wie "!?" abschneiden
+        int end = s.length();
+        while (end > 0 && "+#!?".indexOf(s.charAt(end - 1)) >= 0) end--;
+        s = s.substring(0, end);
+        if (s.isEmpty()) throw new IllegalArgumentException("Leerer Zug");
+
+        if (s.equals("O-O") || s.equals("0-0") || s.equals("O-O-O") || s.equals("0-0-0")) {
+            int targetCol = s.length() == 3 ? 6 : 2;
+            for (Move m : legalMoves) {
+                if (m.isCastle && m.to % 8 == targetCol) return m.copy();
+            }
+            throw new IllegalArgumentException("Rochade nicht erlaubt: " + san);
+        }
+
+        // Umwandlung: "e8=Q" oder "e8Q"
+        byte promoType = 0;
+        char last = s.charAt(s.length() - 1);
+        if ("QRBN".indexOf(last) >= 0 && s.length() > 2) {
+            promoType = typeFromLetter(last);
+            s = s.substring(0, s.length() - (s.charAt(s.length() - 2) == '=' ? 2 : 1));
+        }
+
+        byte type = PieceType.PAWN;
+        int pos = 0;
+        if ("KQRBN".indexOf(s.charAt(0)) >= 0) {
+            type = typeFromLetter(s.charAt(0));
+            pos = 1;
+        }
+        if (s.length() - pos < 2) throw new IllegalArgumentException("Ungültiger Zug: " + san);
+        int to = Fen.parseSquare(s.substring(s.length() - 2));
+
+        // Alles zwischen Figur und Zielfeld ist Disambiguierung (Spalte und/oder Reihe) oder 'x'
+        int fromCol = -1, fromRow = -1;
+        for (int i = pos; i < s.length() - 2; i++) {
+            char c = s.charAt(i);
+            if (c >= 'a' && c <= 'h') fromCol = c - 'a';
+            else if (c >= '1' && c <= '8') fromRow = 7 - (c - '1');
+            else if (c != 'x' && c != '-') throw new IllegalArgumentException("Ungültiger Zug: " + san);
+        }
+
+        Move found = null;
+        for (Move m : legalMoves) {
+            if (m.to != to || Piece.getType(board.pieces[m.from]) != type) continue;
+            if (fromCol != -1 && m.from % 8 != fromCol) continue;
+            if (fromRow != -1 && m.from / 8 != fromRow) continue;
+            if ((m.promotion != Piece.EMPTY) != (promoType != 0)) continue;
+            if (found != null) throw new IllegalArgumentException("Mehrdeutiger Zug: " + san);
+            found = m;
+        }
+        if (found == null) throw new IllegalArgumentException("Zug nicht legal: " + san);
+
+        Move result = found.copy();
+        if (promoType != 0) result.promotion = (byte) (board.whiteToMove ? promoType : promoType | 8);
+        return result;
+    }
+
+    /** SAN für einen legalen Zug in dieser Stellung (ohne +/#). */
+    public static String format(Board board, Move move, List<Move> legalMoves) {
+        if (move.isCastle) return move.to % 8 == 6 ? "O-O" : "O-O-O";
+        byte type = Piece.getType(board.pieces[move.from]);
+        boolean capture = board.pieces[move.to] != Piece.EMPTY || move.isEnPassant;
+        StringBuilder sb = new StringBuilder(8);
+
+        if (type == PieceType.PAWN) {
+            if (capture) sb.append((char) ('a' + move.from % 8));
+        } else {
+            sb.append(" PNBRQK".charAt(type));
+            // Andere gleiche Figuren mit gleichem Ziel? Dann Spalte, notfalls Reihe angeben
+            boolean ambiguous = false, sameCol = false, sameRow = false;
+            for (Move m : legalMoves) {
+                if (m.to != move.to || m.from == move.from) continue;
+                if (Piece.getType(board.pieces[m.from]) != type) continue;
+                ambiguous = true;
+                if (m.from % 8 == move.from % 8) sameCol = true;
+                if (m.from / 8 == move.from / 8) sameRow = true;
+            }
+            if (ambiguous) {
+                if (!sameCol) sb.append((char) ('a' + move.from % 8));
+                else if (!sameRow) sb.append((char) ('8' - move.from / 8));
+                else sb.append(Fen.squareName(move.from));
+            }
+        }
+        if (capture) sb.append('x');
+        sb.append(Fen.squareName(move.to));
+        if (move.promotion != Piece.EMPTY) sb.append('=').append(" PNBRQK".charAt(Piece.getType(move.promotion)));
+        return sb.toString();
+    }
+
+    public static String uci(Move move) {
+        String s = Fen.squareName(move.from) + Fen.squareName(move.to);
+        if (move.promotion != Piece.EMPTY) s += " pnbrqk".charAt(Piece.getType(move.promotion));
+        return s;
+    }
+
+    /** "e2e4" / "e7e8n" -> legaler Zug oder IllegalArgumentException. */
+    public static Move parseUci(Board board, String uci) {
+        if (uci.length() != 4 && uci.length() != 5) throw new IllegalArgumentException("Ungültiger Zug: " + uci);
+        int from = Fen.parseSquare(uci.substring(0, 2));
+        int to = Fen.parseSquare(uci.substring(2, 4));
+        int promoType = uci.length() == 5 ? typeFromLetter(Character.toUpperCase(uci.charAt(4))) : 0;
+        Move move = board.findLegalMove(from | (to << 6) | (promoType << 12));
+        if (move == null) throw new IllegalArgumentException("Zug nicht legal: " + uci);
+        return move;
+    }
+
+    private static byte typeFromLetter(char c) {
+        switch (c) {
+            case 'K': return PieceType.KING;
+            case 'Q': return PieceType.QUEEN;
+            case 'R': return PieceType.ROOK;
+            case 'B': return PieceType.BISHOP;
+            case 'N': return PieceType.KNIGHT;
+            default: throw new IllegalArgumentException("Unbekannte Figur: " + c);
+        }
+    }
+}
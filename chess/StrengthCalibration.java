@@ -0,0 +1,134 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Misst die Stufen aus StrengthLevel: Zeit pro Zug (Schnitt und Maximum) und Stärke.
+ * Stärke heißt hier: Stufe L spielt gegen Stufe L-1 aus zufälligen Eröffnungen, beide Farben;
+ * aus dem Ergebnis wird eine Elo-Differenz geschätzt und aufsummiert (Stufe 1 = 0).
+ * Partien ohne Matt/Patt werden nach --plies Halbzügen nach Material entschieden (ab 2 Bauern).
+ *
+ * Gemessen wird nacheinander auf einem Kern, damit die Zeiten denen im Spiel entsprechen.
+ *
+ * Aufruf: java StrengthCalibration [--games N] [--levels A-B] [--plies P] [--seed S]
+ */
+public class StrengthCalibration {
+
+    private static final int ADJUDICATE_CP = 200;
+
+    public static void main(String[] args) {
+        AsyncLog.setLevel(AsyncLog.Level.INFO);
+        int games = 8;
+        int from = 1, to = StrengthLevel.LEVELS.length;
+        int maxPlies = 160;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--plies": maxPlies = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--levels":
+                    String[] range = args[++i].split("-");
+                    from = Integer.parseInt(range[0]);
+                    to = Integer.parseInt(range[range.length - 1]);
+                    break;
+                default:
+                    System.out.println("Aufruf: java StrengthCalibration [--games N] [--levels A-B] [--plies P] [--seed S]");
+                    return;
+            }
+        }
+
+        Stats[] stats = new Stats[StrengthLevel.LEVELS.length + 1];
+        for (int l = from; l <= to; l++) stats[l] = new Stats();
+        String[] versus = new String[stats.length];
+        double[] elo = new double[stats.length];
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int l = from; l <= to; l++) {
+            StrengthLevel level = StrengthLevel.of(l);
+            versus[l] = "-";
+            if (l > from) {
+                StrengthLevel weaker = StrengthLevel.of(l - 1);
+                double points = 0;
+                for (int g = 0; g < games; g++) {
+                    Board opening = randomOpening(rnd);
+                    if ((g & 1) == 0) points += play(opening, level, weaker, stats[l], stats[l - 1], maxPlies);
+                    else points += 1 - play(opening, weaker, level, stats[l - 1], stats[l], maxPlies);
+                }
+                elo[l] = elo[l - 1] + eloDifference(points / games);
+                versus[l] = String.format("%.1f/%d", points, games);
+            } else if (from == to) {
+                // Nur eine Stufe: wenigstens die Zeiten messen, gegen sich selbst
+                for (int g = 0; g < games; g++) play(randomOpening(rnd), level, level, stats[l], stats[l], maxPlies);
+            }
+        }
+
+        // Erst am Ende ausgeben: jede Stufe spielt auch noch gegen die nächsthöhere
+        System.out.printf("%-28s %10s %10s %12s %14s %8s%n", "Stufe", "ms/Zug", "max ms", "Knoten/Zug", "gegen Vorstufe", "Elo");
+        for (int l = from; l <= to; l++) {
+            Stats s = stats[l];
+            System.out.printf("%-28s %10.1f %10.1f %,12.0f %14s %+8.0f%n", StrengthLevel.of(l), s.averageMillis(),
+                    s.maxNanos / 1e6, s.averageNodes(), versus[l], elo[l]);
+        }
+    }
+
+    /** Spielt eine Partie, Ergebnis aus Sicht von Weiß (1, 0.5, 0). */
+    private static double play(Board start, StrengthLevel white, StrengthLevel black, Stats whiteStats, Stats blackStats,
+                               int maxPlies) {
+        Board board = start.copy();
+        Engine whiteEngine = new Engine(null, false); // Wie im Spiel, ohne Analyse-Speicher
+        Engine blackEngine = new Engine(null, false);
+        for (int ply = 0; ply < maxPlies; ply++) {
+            if (board.generateLegalMoves().isEmpty()) {
+                if (!board.isCheck(board.whiteToMove)) return 0.5;
+                return board.whiteToMove ? 0 : 1;
+            }
+            boolean whiteMoves = board.whiteToMove;
+            Engine engine = whiteMoves ? whiteEngine : blackEngine;
+            long t = System.nanoTime();
+            Move move = engine.getBestMove(board.copy(), whiteMoves ? white : black);
+            (whiteMoves ? whiteStats : blackStats).record(System.nanoTime() - t, engine.getNodes());
+            board.makeMove(board.findLegalMove(move.pack()));
+        }
+        int eval = new Engine(null, false).evaluateClassic(board);
+        int evalWhite = board.whiteToMove ? eval : -eval;
+        if (evalWhite >= ADJUDICATE_CP) return 1;
+        if (evalWhite <= -ADJUDICATE_CP) return 0;
+        return 0.5;
+    }
+
+    private static Board randomOpening(SplittableRandom rnd) {
+        while (true) {
+            Board b = new Board();
+            b.setupStandardBoard();
+            int plies = 4 + rnd.nextInt(5);
+            for (int i = 0; i < plies; i++) {
+                List<Move> moves = b.generateLegalMoves();
+                if (moves.isEmpty()) break;
+                b.makeMove(moves.get(rnd.nextInt(moves.size())));
+            }
+            if (!b.generateLegalMoves().isEmpty()) return b;
+        }
+    }
+
+    // Logistisches Modell; 0 und 1 werden begrenzt, sonst wird die Differenz unendlich
+    private static double eloDifference(double score) {
+        double s = Math.max(0.01, Math.min(0.99, score));
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    private static final class Stats {
+        long moves;
+        long totalNanos;
+        long maxNanos;
+        long totalNodes;
+
+        void record(long nanos, long nodes) {
+            moves++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            totalNodes += nodes;
+        }
+
+        double averageMillis() { return moves == 0 ? 0 : totalNanos / 1e6 / moves; }
+        double averageNodes() { return moves == 0 ? 0 : (double) totalNodes / moves; }
+    }
+}
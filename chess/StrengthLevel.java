@@ -0,0 +1,50 @@
+/**
+ * Spielstärke des Bots. Eine Stufe ist keine Suchtiefe mehr, sondern ein Budget: höchstens so viele
+ * Knoten, höchstens so viel Zeit, dazu optional Rauschen auf der Bewertung, damit schwache Stufen
+ * menschliche Fehler machen statt nur kurzsichtig zu sein.
+ *
+ * Das Knotenbudget bestimmt die Stärke (auf jedem Rechner gleich), die Zeitgrenze ist nur die
+ * Notbremse für langsame Rechner: bei ~250k Knoten/s ist auch Stufe 10 nach 3 s fertig.
+ * Die Werte stammen aus StrengthCalibration.
+ */
+final class StrengthLevel {
+
+    static final StrengthLevel[] LEVELS = {
+        new StrengthLevel(1, "Anfänger", 1, 1_500, 100, 150),
+        new StrengthLevel(2, "Leicht", 2, 4_000, 150, 90),
+        new StrengthLevel(3, "Gelegenheitsspieler", 3, 12_000, 200, 50),
+        new StrengthLevel(4, "Vereinsspieler", 4, 30_000, 300, 25),
+        new StrengthLevel(5, "Mittel", 5, 80_000, 500, 10),
+        new StrengthLevel(6, "Fortgeschritten", 64, 150_000, 700, 0),
+        new StrengthLevel(7, "Stark", 64, 300_000, 1_000, 0),
+        new StrengthLevel(8, "Sehr stark", 64, 600_000, 1_500, 0),
+        new StrengthLevel(9, "Meister", 64, 1_200_000, 2_000, 0),
+        new StrengthLevel(10, "Großmeister", 64, 2_500_000, 3_000, 0),
+    };
+
+    final int level;
+    final String name;
+    final int maxDepth;
+    final long maxNodes;
+    final long maxMillis;
+    final int evalNoise; // +/- Centipawns, 0 = exakte Bewertung
+
+    StrengthLevel(int level, String name, int maxDepth, long maxNodes, long maxMillis, int evalNoise) {
+        this.level = level;
+        this.name = name;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+        this.evalNoise = evalNoise;
+    }
+
+    /** Stufe 1..LEVELS.length, Werte außerhalb werden auf den Rand gezogen. */
+    static StrengthLevel of(int level) {
+        return LEVELS[Math.max(1, Math.min(LEVELS.length, level)) - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "Stufe " + level + " (" + name + ")";
+    }
+}
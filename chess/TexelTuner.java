@@ -0,0 +1,290 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Offline-Tuner für die Bewertungsparameter (Texel-Methode).
+ *
+ * Liest Stellungen mit Partieergebnis zeilenweise ("FEN 1-0", "FEN [0.5]", "FEN c9 \"0-1\";" ...),
+ * löst jede per Ruhesuche zu einer ruhigen Stellung auf und passt dann EvalParams per
+ * lokaler Suche so an, dass sigmoid(Bewertung) das Ergebnis möglichst gut vorhersagt.
+ * Das Ergebnis ist eine Parameterdatei, die Engine beim Start lädt.
+ *
+ * Aufruf: java TexelTuner stellungen.txt [eval.params] [--max N] [--iterations N]
+ */
+public class TexelTuner {
+
+    private static final int BATCH_LINES = 4096;
+    private static final int MAX_QUIET_PLIES = 16;
+
+    // Stellungen kompakt: pro Stellung eine Liste von (Vorzeichen * (Parameterindex + 1))
+    private short[] features = new short[1 << 20];
+    private int[] featureStart = new int[1 << 16];
+    private int[] fixedPart = new int[1 << 16]; // Anteil der Bewertung, der nicht getunt wird
+    private float[] results = new float[1 << 16];
+    private int count = 0;
+    private int featureCount = 0;
+
+    private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(Engine::new);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Aufruf: java TexelTuner stellungen.txt [eval.params] [--max N] [--iterations N]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get("eval.params");
+        long max = Long.MAX_VALUE;
+        int iterations = 100;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--max")) max = Long.parseLong(args[++i]);
+            else if (args[i].equals("--iterations")) iterations = Integer.parseInt(args[++i]);
+            else output = Paths.get(args[i]);
+        }
+
+        TexelTuner tuner = new TexelTuner();
+        long start = System.currentTimeMillis();
+        tuner.load(input, max);
+        System.out.printf("%d ruhige Stellungen geladen in %d ms%n", tuner.count, System.currentTimeMillis() - start);
+        if (tuner.count == 0) return;
+
+        int[] params = EvalParams.ACTIVE.clone();
+        tuner.tune(params, iterations, output);
+    }
+
+    // ---------------------------
+    // Einlesen
+    // ---------------------------
+
+    void load(Path input, long max) throws IOException {
+        featureStart[0] = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(input), StandardCharsets.UTF_8), 1 << 20)) {
+            List<String> batch = new ArrayList<>(BATCH_LINES);
+            String line;
+            long lines = 0;
+            while (count < max && (line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == BATCH_LINES) {
+                    addBatch(batch, max);
+                    batch.clear();
+                }
+                if (++lines % 1_000_000 == 0) System.out.printf("  %d Zeilen gelesen, %d Stellungen%n", lines, count);
+            }
+            addBatch(batch, max);
+        }
+    }
+
+    // Ruhesuche ist der teure Teil, daher parallel; angehängt wird in Eingabereihenfolge
+    private void addBatch(List<String> batch, long max) {
+        List<Sample> samples = batch.parallelStream().map(this::toSample).collect(java.util.stream.Collectors.toList());
+        for (Sample s : samples) {
+            if (s == null) continue;
+            if (count >= max) break;
+            append(s);
+        }
+    }
+
+    private static final class Sample {
+        final short[] features;
+        final int fixedPart;
+        final float result;
+
+        Sample(short[] features, int fixedPart, float result) {
+            this.features = features;
+            this.fixedPart = fixedPart;
+            this.result = result;
+        }
+    }
+
+    private Sample toSample(String line) {
+        float result = parseResult(line);
+        if (Float.isNaN(result)) return null;
+        Board board;
+        try {
+            board = Fen.parse(line);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (board.isCheck(board.whiteToMove)) return null; // Ruhesuche kennt keine Schachabwehr
+
+        Engine engine = engines.get();
+        Board quiet = quietLeaf(engine, board);
+        if (quiet.isCheck(quiet.whiteToMove)) return null;
+
+        short[] f = new short[32];
+        int n = 0;
+        int linear = 0;
+        for (int i = 0; i < 64; i++) {
+            byte p = quiet.pieces[i];
+            byte type = Piece.getType(p);
+            if (p == Piece.EMPTY || type == PieceType.KING) continue;
+            int sign = Piece.isWhite(p) ? 1 : -1;
+            int tableRow = Piece.isWhite(p) ? i / 8 : 7 - i / 8;
+            int tableIdx = tableRow * 8 + i % 8;
+
+            if (n + 2 > f.length) f = Arrays.copyOf(f, f.length * 2);
+            int valueIdx = EvalParams.PIECE_OFFSET + type;
+            f[n++] = (short) (sign * (valueIdx + 1));
+            linear += sign * EvalParams.ACTIVE[valueIdx];
+            int pstIdx = type == PieceType.PAWN ? EvalParams.PAWN_OFFSET + tableIdx
+                       : type == PieceType.KNIGHT ? EvalParams.KNIGHT_OFFSET + tableIdx : -1;
+            if (pstIdx >= 0) {
+                f[n++] = (short) (sign * (pstIdx + 1));
+                linear += sign * EvalParams.ACTIVE[pstIdx];
+            }
+        }
+        int eval = engine.evaluateClassic(quiet); // Auch mit NNUE-Netz wird die klassische Bewertung getunt
+        int whiteEval = quiet.whiteToMove ? eval : -eval;
+        return new Sample(Arrays.copyOf(f, n), whiteEval - linear, result);
+    }
+
+    // Spielt den besten Schlagzug der Ruhesuche aus, bis keiner mehr etwas bringt
+    private static Board quietLeaf(Engine engine, Board board) {
+        Board b = board.copy();
+        for (int ply = 0; ply < MAX_QUIET_PLIES; ply++) {
+            int best = engine.evaluate(b);
+            Move bestMove = null;
+            for (Move m : b.generateLegalMoves()) {
+                if (!Engine.isTactical(b, m)) continue;
+                b.makeMove(m);
+                int value = -engine.quiesce(b, -100000000, -best);
+                b.undoMove(m);
+                if (value > best) {
+                    best = value;
+                    bestMove = m;
+                }
+            }
+            if (bestMove == null) break;
+            b.makeMove(bestMove);
+        }
+        return b;
+    }
+
+    // Ergebnis aus weißer Sicht: 1, 0.5, 0 oder NaN wenn keins gefunden
+    static float parseResult(String line) {
+        if (line.contains("1/2-1/2") || line.contains("[0.5]")) return 0.5f;
+        if (line.contains("1-0") || line.contains("[1.0]") || line.contains("[1]")) return 1f;
+        if (line.contains("0-1") || line.contains("[0.0]") || line.contains("[0]")) return 0f;
+        return Float.NaN;
+    }
+
+    private void append(Sample s) {
+        if (count + 2 > featureStart.length) {
+            int n = featureStart.length * 2;
+            featureStart = Arrays.copyOf(featureStart, n);
+            fixedPart = Arrays.copyOf(fixedPart, n);
+            results = Arrays.copyOf(results, n);
+        }
+        while (featureCount + s.features.length > features.length) {
+            features = Arrays.copyOf(features, features.length * 2);
+        }
+        System.arraycopy(s.features, 0, features, featureCount, s.features.length);
+        featureCount += s.features.length;
+        fixedPart[count] = s.fixedPart;
+        results[count] = s.result;
+        count++;
+        featureStart[count] = featureCount;
+    }
+
+    // ---------------------------
+    // Optimierung
+    // ---------------------------
+
+    void tune(int[] params, int iterations, Path output) throws IOException {
+        double k = fitK(params);
+        double best = loss(params, k);
+        System.out.printf("K = %.3f, Startfehler = %.6f%n", k, best);
+
+        int[] tunable = tunableIndices();
+        for (int iter = 1; iter <= iterations; iter++) {
+            long start = System.currentTimeMillis();
+            boolean improved = false;
+            for (int i : tunable) {
+                params[i] += 1;
+                double l = loss(params, k);
+                if (l < best) {
+                    best = l;
+                    improved = true;
+                    continue;
+                }
+                params[i] -= 2;
+                l = loss(params, k);
+                if (l < best) {
+                    best = l;
+                    improved = true;
+                    continue;
+                }
+                params[i] += 1;
+            }
+            System.out.printf("Iteration %d: Fehler = %.6f (%d ms)%n", iter, best, System.currentTimeMillis() - start);
+            // Nach jeder Runde schreiben, damit ein Abbruch nichts verliert
+            EvalParams.write(params, output, String.format("Texel-Tuning: %d Stellungen, K=%.3f, Fehler=%.6f, Iteration %d",
+                    count, k, best, iter));
+            if (!improved) break;
+        }
+        System.out.println("Parameter geschrieben nach " + output);
+    }
+
+    // Bauernwert bleibt als Anker bei 100, der König ist sowieso auf beiden Seiten gleich
+    private static int[] tunableIndices() {
+        List<Integer> list = new ArrayList<>();
+        for (int t = PieceType.KNIGHT; t <= PieceType.QUEEN; t++) list.add(EvalParams.PIECE_OFFSET + t);
+        for (int i = 8; i < 56; i++) list.add(EvalParams.PAWN_OFFSET + i); // Reihe 1 und 8 haben nie Bauern
+        for (int i = 0; i < 64; i++) list.add(EvalParams.KNIGHT_OFFSET + i);
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Goldener Schnitt über K, damit die Skala zur Sigmoid passt
+    private double fitK(int[] params) {
+        double lo = 0.1, hi = 3.0;
+        double phi = (Math.sqrt(5) - 1) / 2;
+        double a = hi - phi * (hi - lo), b = lo + phi * (hi - lo);
+        double la = loss(params, a), lb = loss(params, b);
+        for (int i = 0; i < 40; i++) {
+            if (la < lb) {
+                hi = b; b = a; lb = la;
+                a = hi - phi * (hi - lo); la = loss(params, a);
+            } else {
+                lo = a; a = b; la = lb;
+                b = lo + phi * (hi - lo); lb = loss(params, b);
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    // Mittlerer quadratischer Fehler, in festen Blöcken parallel über alle Kerne
+    double loss(int[] params, double k) {
+        int chunkSize = 1 << 14;
+        int chunks = (count + chunkSize - 1) / chunkSize;
+        double[] sums = new double[chunks];
+        double scale = -k * Math.log(10) / 400.0;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * chunkSize;
+            int to = Math.min(count, from + chunkSize);
+            double sum = 0;
+            for (int p = from; p < to; p++) {
+                int eval = fixedPart[p];
+                for (int f = featureStart[p]; f < featureStart[p + 1]; f++) {
+                    int code = features[f];
+                    eval += code > 0 ? params[code - 1] : -params[-code - 1];
+                }
+                double predicted = 1.0 / (1.0 + Math.exp(scale * eval));
+                double err = results[p] - predicted;
+                sum += err * err;
+            }
+            sums[c] = sum;
+        });
+        double total = 0;
+        for (double s : sums) total += s; // Feste Reihenfolge -> reproduzierbar
+        return total / count;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Transpositionstabelle fester Größe (Zobrist-Hash -> Tiefe, Score, Bound, bester Zug).
+ *
+ * Mehrere Engines dürfen sich eine Tabelle teilen, auch aus verschiedenen Threads: geschrieben wird
+ * ohne Lock, als Schlüssel steht (Hash XOR Daten) im Array. Ein halb überschriebener Eintrag passt
+ * dadurch beim Lesen einfach nicht mehr zum Hash und zählt als Fehltreffer.
+ */
+final class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1; // Score ist Untergrenze (Beta-Schnitt)
+    static final int UPPER = 2; // Score ist Obergrenze (kein Zug hat Alpha verbessert)
+
+    // Daten: Bit 0-31 Score, 32-39 Tiefe, 40-41 Bound, 42-56 Zug (Move.pack), 63 belegt
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(1024, (long) megabytes * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /** Daten zum Hash oder 0 bei Fehltreffer. */
+    long probe(long hash) {
+        int idx = (int) hash & mask;
+        long d = data[idx];
+        return (keys[idx] ^ d) == hash ? d : 0;
+    }
+
+    void store(long hash, int depth, int bound, int score, int move) {
+        int idx = (int) hash & mask;
+        long old = data[idx];
+        // Tiefere Einträge anderer Stellungen nur verdrängen, wenn der alte nicht mehr passt
+        if ((keys[idx] ^ old) != hash && (old & VALID) != 0 && depth(old) > depth + 2) return;
+        long d = encode(depth, bound, score, move);
+        data[idx] = d;
+        keys[idx] = hash ^ d;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(keys, 0);
+        java.util.Arrays.fill(data, 0);
+    }
+
+    // Gleiches Format nutzt auch der AnalysisStore
+    static long encode(int depth, int bound, int score, int move) {
+        return VALID | ((long) (move & 0x7FFF) << 42) | ((long) (bound & 3) << 40)
+                | ((long) Math.min(depth, 255) << 32) | (score & 0xFFFFFFFFL);
+    }
+
+    static int score(long d) { return (int) d; }
+    static int depth(long d) { return (int) (d >>> 32) & 0xFF; }
+    static int bound(long d) { return (int) (d >>> 40) & 3; }
+    static int move(long d) { return (int) (d >>> 42) & 0x7FFF; }
+}
@@ -0,0 +1,48 @@
+#!/bin/sh
+# Headless-Engine mit schnellem Start (EngineMain).
+#
+#   ./engine.sh build             übersetzen, engine.jar, Tabellen-Schnappschuss und AppCDS-Archiv erzeugen
+#   ./engine.sh [OPTIONEN]        EngineMain mit Archiv und Schnappschuss starten (Optionen siehe EngineMain)
+#   ./engine.sh bench [N]         N Starts (Standard 21), Median der Zeit bis zur ersten Suche (ab main und ab Prozessstart)
+#
+# Alles landet in $ENGINE_BUILD (Standard: build/ neben diesem Skript). Das CDS-Archiv gilt nur für
+# genau dieses engine.jar und diese JVM - nach jeder Änderung neu bauen. Ohne Archiv oder
+# Schnappschuss läuft die Engine trotzdem, nur langsamer an. Die Tabellen-Datei muss nach Änderungen
+# an eval.params nicht neu geschrieben werden, EvalParams merkt das selbst.
+set -e
+DIR=$(cd "$(dirname "$0")" && pwd)
+OUT=${ENGINE_BUILD:-$DIR/build}
+JAR=$OUT/engine.jar
+JSA=$OUT/engine.jsa
+TABLES=$OUT/engine.tables
+JAVA=${JAVA:-java}
+# SerialGC: kein Aufbau der G1-Regionen und -Threads, für eine einzelne Suche mehr als genug
+OPTS="-XX:+UseSerialGC -XX:-UsePerfData -XX:SharedArchiveFile=$JSA -Xshare:auto -Dchess.snapshot=$TABLES"
+
+case "$1" in
+    build)
+        rm -rf "$OUT/classes"
+        mkdir -p "$OUT/classes"
+        javac -encoding UTF-8 -XDstringConcat=inline -d "$OUT/classes" "$DIR"/*.java
+        # Das Archiv braucht einen JAR-Klassenpfad, ein Verzeichnis lehnt die JVM ab
+        jar cf "$JAR" -C "$OUT/classes" .
+        "$JAVA" -cp "$JAR" EngineMain --write-snapshot "$TABLES"
+        rm -f "$JSA"
+        "$JAVA" -XX:+UseSerialGC -XX:ArchiveClassesAtExit="$JSA" -Dchess.snapshot="$TABLES" -cp "$JAR" EngineMain --warmup
+        ;;
+    bench)
+        N=${2:-21}
+        i=0
+        while [ $i -lt "$N" ]; do
+            # %3N: Millisekunden, GNU date
+            "$JAVA" $OPTS -cp "$JAR" EngineMain --fen startpos --depth 1 --timing --since "$(date +%s%3N)" 2>&1 >/dev/null
+            i=$((i + 1))
+        done | sed -n 's/.*nach \([0-9]*\) ms ab main, \([0-9]*\) ms ab Prozessstart.*/\1 \2/p' > "$OUT/bench.txt"
+        median() { sort -n | awk '{ t[NR] = $1 } END { if (NR) printf "Median %d ms (%d-%d)", t[int((NR + 1) / 2)], t[1], t[NR] }'; }
+        echo "$N Starts bis zur ersten Suche: ab main $(cut -d' ' -f1 "$OUT/bench.txt" | median)," \
+            "ab Prozessstart $(cut -d' ' -f2 "$OUT/bench.txt" | median)"
+        ;;
+    *)
+        exec "$JAVA" $OPTS -cp "$JAR" EngineMain "$@"
+        ;;
+esac
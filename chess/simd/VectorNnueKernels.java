@@ -0,0 +1,68 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NNUE-Kerne mit der Vector API. Liegt in einem eigenen Verzeichnis, weil das Inkubator-Modul
+ * beim Übersetzen und beim Start angegeben werden muss:
+ *
+ *   javac -d out chess/*.java
+ *   javac --add-modules jdk.incubator.vector -cp out -d out chess/simd/*.java
+ *   java --add-modules jdk.incubator.vector -cp out ChessGame
+ *
+ * Ohne das Modul findet NnueKernels.create() die Klasse nicht und nimmt die skalaren Kerne.
+ */
+final class VectorNnueKernels implements NnueKernels {
+
+    private static final VectorSpecies<Short> S = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED; // Gleiche Bitbreite wie S
+
+    @Override
+    public void add(short[] acc, short[] w, int wOffset, int n) {
+        int i = 0;
+        for (int bound = S.loopBound(n); i < bound; i += S.length()) {
+            ShortVector.fromArray(S, acc, i).add(ShortVector.fromArray(S, w, wOffset + i)).intoArray(acc, i);
+        }
+        for (; i < n; i++) acc[i] += w[wOffset + i];
+    }
+
+    @Override
+    public void sub(short[] acc, short[] w, int wOffset, int n) {
+        int i = 0;
+        for (int bound = S.loopBound(n); i < bound; i += S.length()) {
+            ShortVector.fromArray(S, acc, i).sub(ShortVector.fromArray(S, w, wOffset + i)).intoArray(acc, i);
+        }
+        for (; i < n; i++) acc[i] -= w[wOffset + i];
+    }
+
+    @Override
+    public void clippedRelu(short[] in, int[] out, int outOffset, int n, int max) {
+        short hi = (short) max;
+        int i = 0;
+        for (int bound = S.loopBound(n); i < bound; i += S.length()) {
+            ShortVector v = ShortVector.fromArray(S, in, i).max((short) 0).min(hi);
+            // Ein Short-Vektor ergibt zwei Int-Vektoren gleicher Breite
+            ((IntVector) v.convertShape(VectorOperators.S2I, I, 0)).intoArray(out, outOffset + i);
+            ((IntVector) v.convertShape(VectorOperators.S2I, I, 1)).intoArray(out, outOffset + i + I.length());
+        }
+        for (; i < n; i++) out[outOffset + i] = Math.max(0, Math.min(max, in[i]));
+    }
+
+    @Override
+    public int dot(int[] a, int[] w, int wOffset, int n) {
+        IntVector sum = IntVector.zero(I);
+        int i = 0;
+        for (int bound = I.loopBound(n); i < bound; i += I.length()) {
+            sum = IntVector.fromArray(I, a, i).mul(IntVector.fromArray(I, w, wOffset + i)).add(sum);
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) result += a[i] * w[wOffset + i];
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return S.vectorBitSize() + " Bit";
+    }
+}
@@ -1,8 +1,24 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class einkaufsliste {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("batch")) {
+            batch(args);
+            return;
+        }
         Scanner scanner = new Scanner(System.in);
         String Produkt;
         double Preis;
@@ -17,9 +33,311 @@ public class einkaufsliste {
         System.out.println("Du hast "+ Anzahl +" "+ Produkt + " gekauft");
         gesamt=Anzahl*Preis;
         System.out.println("Gesamt:"+gesamt);
-     
+
     }
-}
-        
 
+    // ---------------------------
+    // Stapelmodus: java einkaufsliste batch datei [--threads T] [--top K]
+    //
+    // Eine Zeile pro Einkauf: Produkt;Preis;Anzahl (oder mit Komma getrennt, dann Preis mit Punkt).
+    // Preise werden exakt in Cent (long) gerechnet. Die Datei wird in zeilengenaue Stücke zerlegt
+    // und gemappt; jeder Thread summiert in seiner eigenen Hash-Tabelle (nur primitive Arrays,
+    // Produktnamen als Bytes), am Ende werden die Tabellen zusammengeführt.
+    // Zeilen, die sich nicht lesen lassen (z.B. eine Kopfzeile), werden gezählt und übersprungen.
+    // ---------------------------
+
+    private static final long RANGE = 256L << 20; // Bytes pro Stück, weit unter der 2-GB-Grenze von map()
+
+    private static void batch(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Aufruf: java einkaufsliste batch datei [--threads T] [--top K]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int top = 10;
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Wert fehlt für " + args[i]);
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--top": top = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unbekannte Option: " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        Totals all = new Totals();
+        try (FileChannel channel = FileChannel.open(Paths.get(args[1]), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = lineBounds(channel, size, Math.max(threads * 4L, (size + RANGE - 1) / RANGE));
+            byte separator = detectSeparator(channel, size);
+
+            AtomicInteger nextRange = new AtomicInteger();
+            Totals[] perThread = new Totals[threads];
+            Exception[] failure = new Exception[1];
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                Totals totals = perThread[t] = new Totals();
+                workers[t] = new Thread(() -> {
+                    int r;
+                    try {
+                        while ((r = nextRange.getAndIncrement()) < bounds.length - 1) {
+                            long from = bounds[r], to = bounds[r + 1];
+                            if (to > from) parse(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), separator, totals);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        synchronized (failure) { failure[0] = e; }
+                    }
+                }, "batch-" + t);
+                workers[t].start();
+            }
+            for (Thread w : workers) w.join();
+            if (failure[0] != null) throw failure[0];
+            for (Totals t : perThread) all.mergeFrom(t);
+        }
+        report(all, top, (System.nanoTime() - start) / 1e9);
+    }
+
+    // Grenzen so verschieben, dass jedes Stück direkt hinter einem Zeilenumbruch beginnt
+    private static long[] lineBounds(FileChannel channel, long size, long parts) throws IOException {
+        long[] bounds = new long[(int) parts + 1];
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (int i = 1; i < parts; i++) {
+            long pos = Math.max(bounds[i - 1], size * i / parts);
+            search:
+            while (pos < size) {
+                buf.clear();
+                int n = channel.read(buf, pos);
+                for (int k = 0; k < n; k++) {
+                    if (buf.get(k) == '\n') {
+                        pos += k + 1;
+                        break search;
+                    }
+                }
+                pos += n;
+            }
+            bounds[i] = Math.min(pos, size);
+        }
+        bounds[(int) parts] = size;
+        return bounds;
+    }
+
+    private static byte detectSeparator(FileChannel channel, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(4096, size));
+        channel.read(buf, 0);
+        for (int i = 0; i < buf.position() && buf.get(i) != '\n'; i++) {
+            if (buf.get(i) == ';') return ';';
+        }
+        return ',';
+    }
+
+    // Eine Zeile nach der anderen direkt aus dem gemappten Puffer, ohne Strings
+    private static void parse(MappedByteBuffer buf, byte separator, Totals totals) {
+        int limit = buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            int lineStart = pos;
+            int sep1 = -1, sep2 = -1;
+            while (pos < limit) {
+                byte b = buf.get(pos);
+                if (b == '\n') break;
+                if (b == separator) {
+                    if (sep1 < 0) sep1 = pos;
+                    else if (sep2 < 0) sep2 = pos;
+                }
+                pos++;
+            }
+            int lineEnd = pos;
+            pos++; // '\n' überspringen
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') lineEnd--;
+            if (lineEnd == lineStart) continue;
+            if (sep2 < 0) {
+                totals.skipped++;
+                continue;
+            }
+            long cents = parseCents(buf, sep1 + 1, sep2);
+            long quantity = parseLong(buf, sep2 + 1, lineEnd);
+            if (cents < 0 || quantity < 0) {
+                totals.skipped++;
+                continue;
+            }
+            int keyStart = lineStart, keyEnd = sep1;
+            while (keyStart < keyEnd && buf.get(keyStart) == ' ') keyStart++;
+            while (keyEnd > keyStart && buf.get(keyEnd - 1) == ' ') keyEnd--;
+            totals.add(buf, keyStart, keyEnd, Math.multiplyExact(cents, quantity), quantity);
+        }
+    }
+
+    // "1.29", "1,29", "3", "0.5" -> Cent; -1 wenn keine Zahl
+    private static long parseCents(ByteBuffer buf, int from, int to) {
+        while (from < to && buf.get(from) == ' ') from++;
+        while (to > from && buf.get(to - 1) == ' ') to--;
+        long value = 0;
+        int decimals = -1;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                if (decimals >= 2) return -1; // Bruchteile von Cent gibt es nicht
+                value = value * 10 + (b - '0');
+                if (decimals >= 0) decimals++;
+                digits = true;
+            } else if ((b == '.' || b == ',') && decimals < 0) {
+                decimals = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (!digits) return -1;
+        if (decimals <= 0) return value * 100;
+        return decimals == 1 ? value * 10 : value;
+    }
+
+    private static long parseLong(ByteBuffer buf, int from, int to) {
+        while (from < to && buf.get(from) == ' ') from++;
+        while (to > from && buf.get(to - 1) == ' ') to--;
+        if (from == to) return -1;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9') return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
 
+    private static void report(Totals all, int top, double seconds) {
+        long grandCents = 0, grandQuantity = 0, lines = 0;
+        for (int e = 0; e < all.size; e++) {
+            grandCents += all.cents[e];
+            grandQuantity += all.quantity[e];
+            lines += all.lines[e];
+        }
+        System.out.printf(Locale.GERMANY, "%,d Einkäufe, %,d Produkte, %,d Zeilen übersprungen, %.2f s%n",
+                lines, all.size, all.skipped, seconds);
+
+        Integer[] order = new Integer[all.size];
+        for (int e = 0; e < all.size; e++) order[e] = e;
+        Arrays.sort(order, (a, b) -> Long.compare(all.cents[b], all.cents[a]));
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < Math.min(top, order.length); i++) {
+            int e = order[i];
+            rows.add(String.format(Locale.GERMANY, "%3d. %-30s %,12d Stück %18s", i + 1, all.name(e), all.quantity[e], euro(all.cents[e])));
+        }
+        rows.forEach(System.out::println);
+        System.out.printf(Locale.GERMANY, "Gesamt: %,d Stück, %s%n", grandQuantity, euro(grandCents));
+    }
+
+    private static String euro(long cents) {
+        return String.format(Locale.GERMANY, "%,d,%02d €", cents / 100, cents % 100);
+    }
+
+    // Offene Adressierung, Schlüssel als Bytes in einem gemeinsamen Array, Summen in long-Arrays
+    private static final class Totals {
+        int[] slots = new int[1024]; // Eintragsnummer + 1, 0 = frei
+        int[] hashes = new int[512];
+        int[] keyOffsets = new int[512];
+        int[] keyLengths = new int[512];
+        long[] cents = new long[512];
+        long[] quantity = new long[512];
+        long[] lines = new long[512];
+        byte[] keys = new byte[8192];
+        int keyBytes;
+        int size;
+        long skipped;
+
+        void add(ByteBuffer buf, int from, int to, long amount, long count) {
+            int h = 0x811C9DC5;
+            for (int i = from; i < to; i++) h = (h ^ buf.get(i)) * 0x01000193;
+            int mask = slots.length - 1;
+            for (int s = h & mask; ; s = (s + 1) & mask) {
+                int e = slots[s] - 1;
+                if (e < 0) {
+                    e = insert(h, buf, from, to);
+                    account(e, amount, count, 1);
+                    return;
+                }
+                if (hashes[e] == h && sameKey(e, buf, from, to)) {
+                    account(e, amount, count, 1);
+                    return;
+                }
+            }
+        }
+
+        private boolean sameKey(int e, ByteBuffer buf, int from, int to) {
+            if (keyLengths[e] != to - from) return false;
+            int off = keyOffsets[e];
+            for (int i = from; i < to; i++) {
+                if (keys[off++] != buf.get(i)) return false;
+            }
+            return true;
+        }
+
+        private void account(int e, long amount, long count, long lineCount) {
+            cents[e] = Math.addExact(cents[e], amount);
+            quantity[e] += count;
+            lines[e] += lineCount;
+        }
+
+        private int insert(int h, ByteBuffer buf, int from, int to) {
+            int len = to - from;
+            if (keyBytes + len > keys.length) keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keyBytes + len));
+            for (int i = from; i < to; i++) keys[keyBytes + i - from] = buf.get(i);
+            keyBytes += len;
+            return insert(h, keyBytes - len, len);
+        }
+
+        private int insert(int h, int offset, int len) {
+            if (size == hashes.length) {
+                int n = size * 2;
+                hashes = Arrays.copyOf(hashes, n);
+                keyOffsets = Arrays.copyOf(keyOffsets, n);
+                keyLengths = Arrays.copyOf(keyLengths, n);
+                cents = Arrays.copyOf(cents, n);
+                quantity = Arrays.copyOf(quantity, n);
+                lines = Arrays.copyOf(lines, n);
+            }
+            int e = size++;
+            hashes[e] = h;
+            keyOffsets[e] = offset;
+            keyLengths[e] = len;
+            if (size * 2 > slots.length) rehash(); else place(e);
+            return e;
+        }
+
+        private void place(int e) {
+            int mask = slots.length - 1;
+            int s = hashes[e] & mask;
+            while (slots[s] != 0) s = (s + 1) & mask;
+            slots[s] = e + 1;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            for (int e = 0; e < size; e++) place(e);
+        }
+
+        void mergeFrom(Totals other) {
+            skipped += other.skipped;
+            ByteBuffer otherKeys = ByteBuffer.wrap(other.keys);
+            for (int o = 0; o < other.size; o++) {
+                int from = other.keyOffsets[o], to = from + other.keyLengths[o];
+                int h = other.hashes[o];
+                int mask = slots.length - 1;
+                int e;
+                for (int s = h & mask; ; s = (s + 1) & mask) {
+                    e = slots[s] - 1;
+                    if (e < 0) {
+                        e = insert(h, otherKeys, from, to);
+                        break;
+                    }
+                    if (hashes[e] == h && sameKey(e, otherKeys, from, to)) break;
+                }
+                account(e, other.cents[o], other.quantity[o], other.lines[o]);
+            }
+        }
+
+        String name(int e) {
+            return new String(keys, keyOffsets[e], keyLengths[e], StandardCharsets.UTF_8);
+        }
+    }
+}
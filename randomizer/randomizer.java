@@ -1,7 +1,19 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class randomizer {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("bulk")) {
+            bulk(args);
+            return;
+        }
         Random random = new Random();
         int zahl;
         boolean Muenze;
@@ -13,7 +25,195 @@ public class randomizer {
     }
     else{
         System.out.println("Zahl");
-    
+
+        }
+    }
+
+    // ---------------------------
+    // Massenmodus: java randomizer bulk N [--threads T] [--seed S] [--out datei]
+    //
+    // N Würfelwürfe und N Münzwürfe (N darf 2g, 500m, 10k usw. sein). Gearbeitet wird in Blöcken
+    // fester Größe; jeder Block hat seinen eigenen, nur aus Seed und Blocknummer abgeleiteten
+    // Zufallsstrom. Gleicher Seed = gleiche Ergebnisse, egal mit wie vielen Threads.
+    // --out schreibt die Rohdaten: erst N Bytes Würfel (1-6), dann N Bits Münzen (1 = Kopf).
+    // Am Ende: Histogramm und Chi-Quadrat-Test auf Gleichverteilung.
+    // ---------------------------
+
+    private static final int CHUNK = 1 << 24; // Würfe pro Block, Vielfaches von 64
+
+    private static void bulk(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Aufruf: java randomizer bulk N [--threads T] [--seed S] [--out datei]");
+            return;
+        }
+        long n = parseCount(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String out = null;
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Wert fehlt für " + args[i]);
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--out": out = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unbekannte Option: " + args[i]);
+            }
+        }
+
+        long chunks = (n + CHUNK - 1) / CHUNK;
+        AtomicLong nextChunk = new AtomicLong();
+        long[][] diceCounts = new long[threads][6];
+        long[] heads = new long[threads];
+        long start = System.nanoTime();
+
+        try (FileChannel channel = out == null ? null : FileChannel.open(Paths.get(out),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long s = seed;
+            Thread[] workers = new Thread[threads];
+            IOException[] failure = new IOException[1];
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                workers[t] = new Thread(() -> {
+                    ByteBuffer diceBuf = channel == null ? null : ByteBuffer.allocateDirect(CHUNK);
+                    ByteBuffer coinBuf = channel == null ? null : ByteBuffer.allocateDirect(CHUNK / 8).order(ByteOrder.LITTLE_ENDIAN);
+                    long c;
+                    while ((c = nextChunk.getAndIncrement()) < chunks) {
+                        int count = (int) Math.min(CHUNK, n - c * CHUNK);
+                        SplittableRandom rnd = new SplittableRandom(mix(s + c * 0x9E37_79B9_7F4A_7C15L));
+                        rollDice(rnd, count, diceCounts[id], diceBuf);
+                        heads[id] += flipCoins(rnd.split(), count, coinBuf);
+                        if (channel != null) {
+                            try {
+                                writeFully(channel, diceBuf, c * CHUNK);
+                                writeFully(channel, coinBuf, n + c * (CHUNK / 8));
+                            } catch (IOException e) {
+                                synchronized (failure) { failure[0] = e; }
+                                return;
+                            }
+                        }
+                    }
+                }, "bulk-" + t);
+                workers[t].start();
+            }
+            for (Thread w : workers) w.join();
+            if (failure[0] != null) throw failure[0];
         }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] dice = new long[6];
+        long totalHeads = 0;
+        for (int t = 0; t < threads; t++) {
+            for (int f = 0; f < 6; f++) dice[f] += diceCounts[t][f];
+            totalHeads += heads[t];
+        }
+        report(n, seed, dice, totalHeads, seconds);
+    }
+
+    // Je 3 Zufallsbits ein Wurf, 6 und 7 werden verworfen: exakt gleichverteilt und ohne Division
+    private static void rollDice(SplittableRandom rnd, int count, long[] counts, ByteBuffer out) {
+        long c0 = 0, c1 = 0, c2 = 0, c3 = 0, c4 = 0, c5 = 0;
+        int done = 0;
+        if (out != null) out.clear();
+        while (done < count) {
+            long bits = rnd.nextLong();
+            for (int k = 0; k < 21 && done < count; k++, bits >>>= 3) {
+                int v = (int) (bits & 7);
+                switch (v) {
+                    case 0: c0++; break;
+                    case 1: c1++; break;
+                    case 2: c2++; break;
+                    case 3: c3++; break;
+                    case 4: c4++; break;
+                    case 5: c5++; break;
+                    default: continue;
+                }
+                if (out != null) out.put((byte) (v + 1));
+                done++;
+            }
+        }
+        counts[0] += c0; counts[1] += c1; counts[2] += c2;
+        counts[3] += c3; counts[4] += c4; counts[5] += c5;
+        if (out != null) out.flip();
+    }
+
+    // 64 Münzen pro Zufallszahl, gezählt per bitCount
+    private static long flipCoins(SplittableRandom rnd, int count, ByteBuffer out) {
+        long heads = 0;
+        if (out != null) out.clear();
+        int full = count / 64;
+        for (int i = 0; i < full; i++) {
+            long bits = rnd.nextLong();
+            heads += Long.bitCount(bits);
+            if (out != null) out.putLong(bits);
+        }
+        int rest = count % 64;
+        if (rest > 0) {
+            long bits = rnd.nextLong() & ((1L << rest) - 1);
+            heads += Long.bitCount(bits);
+            if (out != null) {
+                for (int b = 0; b < (rest + 7) / 8; b++) out.put((byte) (bits >>> (8 * b)));
+            }
+        }
+        if (out != null) out.flip();
+        return heads;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += channel.write(buf, position);
+    }
+
+    private static void report(long n, long seed, long[] dice, long heads, double seconds) {
+        System.out.printf("Seed %d, %,d Würfel- und %,d Münzwürfe in %.2f s (%,.0f Würfe/s)%n",
+                seed, n, n, seconds, 2 * n / seconds);
+        double expected = n / 6.0;
+        double chiDice = 0;
+        for (int f = 0; f < 6; f++) {
+            double d = dice[f] - expected;
+            chiDice += d * d / expected;
+            System.out.printf("  %d: %,15d  (%.6f)%n", f + 1, dice[f], dice[f] / (double) n);
+        }
+        long tails = n - heads;
+        System.out.printf("  Kopf: %,15d  (%.6f)%n  Zahl: %,15d  (%.6f)%n", heads, heads / (double) n, tails, tails / (double) n);
+        double half = n / 2.0;
+        double chiCoin = ((heads - half) * (heads - half) + (tails - half) * (tails - half)) / half;
+        System.out.printf("Chi-Quadrat Würfel: %.3f (5 FG, p = %.4f)%n", chiDice, chiSquareP5(chiDice));
+        System.out.printf("Chi-Quadrat Münze:  %.3f (1 FG, p = %.4f)%n", chiCoin, chiSquareP1(chiCoin));
+    }
+
+    // p-Werte über die geschlossene Form der unvollständigen Gammafunktion für halbzahlige Parameter
+    private static double chiSquareP1(double chi) {
+        return erfc(Math.sqrt(chi / 2));
+    }
+
+    private static double chiSquareP5(double chi) {
+        double x = chi / 2;
+        double sqrtPi = Math.sqrt(Math.PI);
+        return erfc(Math.sqrt(x)) + Math.exp(-x) * (Math.sqrt(x) / (sqrtPi / 2) + Math.pow(x, 1.5) / (3 * sqrtPi / 4));
+    }
+
+    // Komplementäre Fehlerfunktion (Chebyshev-Näherung, Fehler < 1.2e-7)
+    private static double erfc(double z) {
+        double t = 1.0 / (1.0 + 0.5 * Math.abs(z));
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return z >= 0 ? r : 2 - r;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // "1000", "500k", "10m", "2g"
+    private static long parseCount(String s) {
+        long factor = 1;
+        char last = Character.toLowerCase(s.charAt(s.length() - 1));
+        if (last == 'k') factor = 1_000;
+        else if (last == 'm') factor = 1_000_000;
+        else if (last == 'g') factor = 1_000_000_000;
+        if (factor > 1) s = s.substring(0, s.length() - 1);
+        return Long.parseLong(s.replace("_", "")) * factor;
     }
-}
\ No newline at end of file
+}